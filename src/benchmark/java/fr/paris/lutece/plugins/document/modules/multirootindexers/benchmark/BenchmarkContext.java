@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.benchmark;
+
+import fr.paris.lutece.plugins.lucene.service.indexer.IFileIndexerFactory;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.lang.reflect.Field;
+
+import java.util.Properties;
+
+
+/**
+ * Sets up the Lutece services used by the benchmarks, without a webapp nor a
+ * database : the properties are read from a generated configuration
+ * directory, which includes the properties of the module, and the Spring beans
+ * are in-memory stand-ins.
+ */
+public final class BenchmarkContext
+{
+    private static final String PATH_CONF = "/WEB-INF/conf/";
+    private static final String PATH_MODULE_PROPERTIES = "webapp/WEB-INF/conf/plugins/" +
+        "document-multirootindexers.properties";
+    private static final String[] CORE_PROPERTIES_FILES = 
+        {
+            "config.properties", "db.properties", "lutece.properties", "search.properties", "daemons.properties",
+            "caches.properties", "editors.properties"
+        };
+    private static final String BEAN_MULTI_ROOT_DOCUMENT_DAO = "document-multirootindexers.multiRootDocumentDAO";
+    private static final String FIELD_CONTEXT = "_context";
+    private static final InMemoryMultiRootDocumentDAO _documentDAO = new InMemoryMultiRootDocumentDAO(  );
+    private static boolean _bInitialized;
+
+    /**
+     * Private constructor
+     */
+    private BenchmarkContext(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Initializes the services, once per JVM
+     */
+    public static synchronized void init(  )
+    {
+        if ( _bInitialized )
+        {
+            return;
+        }
+
+        try
+        {
+            File fileWebapp = createWebapp(  );
+            AppPathService.init( fileWebapp.getAbsolutePath(  ) );
+            AppPropertiesService.init( PATH_CONF );
+
+            StaticApplicationContext context = new StaticApplicationContext(  );
+            context.getBeanFactory(  ).registerSingleton( IFileIndexerFactory.BEAN_FILE_INDEXER_FACTORY,
+                    new PlainTextFileIndexerFactory(  ) );
+            context.getBeanFactory(  ).registerSingleton( BEAN_MULTI_ROOT_DOCUMENT_DAO, _documentDAO );
+            context.refresh(  );
+
+            // SpringContextService is only initialized from a servlet context
+            Field field = SpringContextService.class.getDeclaredField( FIELD_CONTEXT );
+            field.setAccessible( true );
+            field.set( null, context );
+        }
+        catch ( Exception e )
+        {
+            throw new IllegalStateException( "Unable to initialize the benchmark context : " + e.getMessage(  ), e );
+        }
+
+        _bInitialized = true;
+    }
+
+    /**
+     * Gets the in-memory document DAO, which serves the binary values
+     * @return the DAO
+     */
+    public static InMemoryMultiRootDocumentDAO getDocumentDAO(  )
+    {
+        return _documentDAO;
+    }
+
+    /**
+     * Creates the configuration directory : empty core properties files and
+     * the properties of the module, with the settings of the benchmarks
+     * @return the webapp directory
+     * @throws IOException if the files cannot be written
+     */
+    private static File createWebapp(  ) throws IOException
+    {
+        File fileWebapp = File.createTempFile( "multirootindexers-benchmark", "" );
+
+        if ( !fileWebapp.delete(  ) || !new File( fileWebapp, PATH_CONF + "plugins" ).mkdirs(  ) )
+        {
+            throw new IOException( "Unable to create " + fileWebapp );
+        }
+
+        File fileConf = new File( fileWebapp, PATH_CONF );
+
+        for ( String strFile : CORE_PROPERTIES_FILES )
+        {
+            store( new Properties(  ), new File( fileConf, strFile ) );
+        }
+
+        Properties properties = new Properties(  );
+        FileInputStream in = new FileInputStream( PATH_MODULE_PROPERTIES );
+
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close(  );
+        }
+
+        properties.setProperty( "document.documentIndexer.baseUrl", "http://localhost/lutece/jsp/site/Portal.jsp" );
+        // measures the text extraction rather than the cache lookups
+        properties.setProperty( "document-multirootindexers.extractedTextCache.maxEntries", "0" );
+        store( properties, new File( fileConf, "plugins/document-multirootindexers.properties" ) );
+
+        return fileWebapp;
+    }
+
+    /**
+     * Writes a properties file
+     * @param properties the properties
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    private static void store( Properties properties, File file ) throws IOException
+    {
+        OutputStream out = new FileOutputStream( file );
+
+        try
+        {
+            properties.store( out, null );
+        }
+        finally
+        {
+            out.close(  );
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.benchmark;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.document.IMultiRootDocumentDAO;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import java.sql.Timestamp;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * In-memory stand-in for the document DAO : serves the binary values
+ * registered by the benchmarks, the other queries find nothing.
+ */
+public class InMemoryMultiRootDocumentDAO implements IMultiRootDocumentDAO
+{
+    private final Map<String, byte[]> _mapBinaryValues = new ConcurrentHashMap<String, byte[]>(  );
+
+    /**
+     * Registers a binary value
+     * @param nIdDocument the document id
+     * @param nIdAttribute the attribute id
+     * @param value the value
+     */
+    public void putBinaryValue( int nIdDocument, int nIdAttribute, byte[] value )
+    {
+        _mapBinaryValues.put( getKey( nIdDocument, nIdAttribute ), value );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public InputStream openBinaryValue( int nIdDocument, int nIdAttribute, Plugin plugin )
+    {
+        byte[] value = _mapBinaryValues.get( getKey( nIdDocument, nIdAttribute ) );
+
+        return ( value == null ) ? null : new ByteArrayInputStream( value );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, Document> loadDocuments( Collection<Integer> collectionIdsDocuments, Plugin plugin )
+    {
+        return new HashMap<Integer, Document>(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, Timestamp> loadModificationDates( Collection<Integer> collectionIdsDocuments, Plugin plugin )
+    {
+        return new HashMap<Integer, Timestamp>(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void loadPortletRoles( String strIdPortletType, Collection<Integer> collectionIdsPages,
+            Map<Integer, String> mapRoles )
+    {
+        // nothing
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void loadPublications( Collection<Integer> collectionIdsPortlets, Plugin plugin,
+            Map<Integer, List<Integer>> mapPortlets )
+    {
+        // nothing
+    }
+
+    /**
+     * Gets the key of a binary value
+     * @param nIdDocument the document id
+     * @param nIdAttribute the attribute id
+     * @return the key
+     */
+    private static String getKey( int nIdDocument, int nIdAttribute )
+    {
+        return nIdDocument + "_" + nIdAttribute;
+    }
+}
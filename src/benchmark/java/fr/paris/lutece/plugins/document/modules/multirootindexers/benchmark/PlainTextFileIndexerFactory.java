@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.benchmark;
+
+import fr.paris.lutece.plugins.lucene.service.indexer.IFileIndexer;
+import fr.paris.lutece.plugins.lucene.service.indexer.IFileIndexerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+
+/**
+ * Stand-in for the file indexers of the lucene plugin : every content type is
+ * read as UTF-8 text, so the benchmarks measure the module rather than a
+ * document parser.
+ */
+public class PlainTextFileIndexerFactory implements IFileIndexerFactory
+{
+    private static final int BUFFER_SIZE = 8192;
+    private static final String CHARSET_UTF8 = "UTF-8";
+    private final IFileIndexer _indexer = new PlainTextFileIndexer(  );
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public IFileIndexer getIndexer( String strMimeType )
+    {
+        return _indexer;
+    }
+
+    /**
+     * Reads the content as UTF-8 text
+     */
+    private static final class PlainTextFileIndexer implements IFileIndexer
+    {
+        /**
+         *
+         *{@inheritDoc}
+         */
+        public String getContentToIndex( InputStream is )
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(  );
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            try
+            {
+                int nRead = is.read( buffer );
+
+                while ( nRead != -1 )
+                {
+                    out.write( buffer, 0, nRead );
+                    nRead = is.read( buffer );
+                }
+
+                return out.toString( CHARSET_UTF8 );
+            }
+            catch ( UnsupportedEncodingException e )
+            {
+                throw new IllegalStateException( e.getMessage(  ), e );
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( e.getMessage(  ), e );
+            }
+        }
+    }
+}
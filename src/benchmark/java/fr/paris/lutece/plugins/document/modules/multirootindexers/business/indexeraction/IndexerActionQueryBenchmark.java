@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the building of the filtered indexer action queries, see
+ * {@link MultiRootIndexerActionDAO#buildRequestWithFilter(String, List, String)}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class IndexerActionQueryBenchmark
+{
+    private static final String SQL_QUERY_SELECT = "SELECT id_action, id_document, id_task, indexer_name, id_portlet" +
+        " FROM core_indexer_action_en";
+    private static final String SQL_ORDER_BY_ID = " ORDER BY id_action";
+    private static final String[] FILTERS = { " id_task = ? ", " indexer_name = ? ", " id_portlet = ? " };
+
+    /** Number of filters of the query */
+    @Param( { "0", "1", "3" } )
+    public int _nFilters;
+
+    private List<String> _listFilters;
+
+    /**
+     * Builds the filters
+     */
+    @Setup
+    public void setUp(  )
+    {
+        _listFilters = new ArrayList<String>(  );
+
+        for ( int i = 0; i < _nFilters; i++ )
+        {
+            _listFilters.add( FILTERS[i] );
+        }
+    }
+
+    /**
+     * Query without order
+     * @return the query
+     */
+    @Benchmark
+    public String buildRequestWithFilter(  )
+    {
+        return MultiRootIndexerActionDAO.buildRequestWithFilter( SQL_QUERY_SELECT, _listFilters, null );
+    }
+
+    /**
+     * Query with order
+     * @return the query
+     */
+    @Benchmark
+    public String buildRequestWithFilterOrdered(  )
+    {
+        return MultiRootIndexerActionDAO.buildRequestWithFilter( SQL_QUERY_SELECT, _listFilters, SQL_ORDER_BY_ID );
+    }
+}
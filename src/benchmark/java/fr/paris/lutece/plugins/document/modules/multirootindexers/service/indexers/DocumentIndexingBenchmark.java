@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.business.attributes.DocumentAttribute;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.benchmark.BenchmarkContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the building of the lucene documents, on synthetic documents :
+ * {@link MultiRootDocumentIndexer#getContentToIndex(Document)} with text
+ * attributes only or with binary attributes as well, and
+ * {@link MultiRootDocumentIndexer#getDocument(Document, String, String, String)}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class DocumentIndexingBenchmark
+{
+    private static final String URL = "http://localhost/lutece/jsp/site/Portal.jsp?document_id=1&portlet_id=1";
+    private static final String ROLE = "none";
+    private static final String PORTLET_DOCUMENT_ID = "1&1";
+    private static final String CONTENT_TYPE_BINARY = "application/x-benchmark";
+    private static final String CHARSET_UTF8 = "UTF-8";
+    private static final String[] WORDS = { "lutece", "document", "portlet", "indexation", "recherche", "paris",
+        "mairie", "service", "page", "contenu", "<b>", "</b>", "&eacute;t&eacute;", "<p>", "</p>", "<br/>" };
+    private static final int BINARY_ATTRIBUTES = 2;
+    private static final long SEED = 42L;
+
+    /** Number of text attributes of the documents */
+    @Param( { "4", "32" } )
+    public int _nTextAttributes;
+
+    /** Length of the text attributes, in characters */
+    @Param( { "200", "5000" } )
+    public int _nTextLength;
+
+    /** Size of the binary attributes, in bytes */
+    @Param( { "100000" } )
+    public int _nBinarySize;
+
+    private Document _documentText;
+    private Document _documentBinary;
+
+    /**
+     * Builds the documents
+     * @throws UnsupportedEncodingException never
+     */
+    @Setup
+    public void setUp( ) throws UnsupportedEncodingException
+    {
+        BenchmarkContext.init( );
+
+        Random random = new Random( SEED );
+        _documentText = newDocument( 1, random, 0 );
+        _documentBinary = newDocument( 2, random, BINARY_ATTRIBUTES );
+    }
+
+    /**
+     * Content of a document with text attributes only
+     * @return the content
+     */
+    @Benchmark
+    public String getContentToIndexText( )
+    {
+        return MultiRootDocumentIndexer.getContentToIndex( _documentText );
+    }
+
+    /**
+     * Content of a document with binary attributes, streamed from the
+     * in-memory document DAO
+     * @return the content
+     */
+    @Benchmark
+    public String getContentToIndexBinary( )
+    {
+        return MultiRootDocumentIndexer.getContentToIndex( _documentBinary );
+    }
+
+    /**
+     * Whole lucene document : content, parsing and fields
+     * @return the lucene document
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception
+     */
+    @Benchmark
+    public org.apache.lucene.document.Document getDocument( ) throws IOException, InterruptedException
+    {
+        return MultiRootDocumentIndexer.getDocument( _documentText, URL, ROLE, PORTLET_DOCUMENT_ID );
+    }
+
+    /**
+     * Builds a document
+     * @param nIdDocument the document id
+     * @param random the random generator
+     * @param nBinaryAttributes the number of binary attributes
+     * @return the document
+     * @throws UnsupportedEncodingException never
+     */
+    private Document newDocument( int nIdDocument, Random random, int nBinaryAttributes )
+            throws UnsupportedEncodingException
+    {
+        List<DocumentAttribute> listAttributes = new ArrayList<DocumentAttribute>( );
+        int nIdAttribute = 1;
+
+        for ( int i = 0; i < _nTextAttributes; i++ )
+        {
+            DocumentAttribute attribute = newAttribute( nIdAttribute++, "text" + i );
+            attribute.setTextValue( newText( random, _nTextLength ) );
+            listAttributes.add( attribute );
+        }
+
+        for ( int i = 0; i < nBinaryAttributes; i++ )
+        {
+            DocumentAttribute attribute = newAttribute( nIdAttribute, "file" + i );
+            attribute.setBinary( true );
+            attribute.setValueContentType( CONTENT_TYPE_BINARY );
+            // not loaded with the document, streamed like the real binary values
+            BenchmarkContext.getDocumentDAO( ).putBinaryValue( nIdDocument, nIdAttribute,
+                    newText( random, _nBinarySize ).getBytes( CHARSET_UTF8 ) );
+            listAttributes.add( attribute );
+            nIdAttribute++;
+        }
+
+        Document document = new Document( );
+        document.setId( nIdDocument );
+        document.setCodeDocumentType( "benchmark" + nBinaryAttributes );
+        document.setType( "Benchmark" );
+        document.setTitle( newText( random, 50 ) );
+        document.setSummary( newText( random, 200 ) );
+        document.setXmlMetadata( "<metadata>" + newText( random, 100 ) + "</metadata>" );
+        document.setDateModification( new Timestamp( System.currentTimeMillis( ) ) );
+        document.setAttributes( listAttributes );
+
+        return document;
+    }
+
+    /**
+     * Builds a searchable attribute
+     * @param nIdAttribute the attribute id
+     * @param strCode the attribute code
+     * @return the attribute
+     */
+    private static DocumentAttribute newAttribute( int nIdAttribute, String strCode )
+    {
+        DocumentAttribute attribute = new DocumentAttribute( );
+        attribute.setId( nIdAttribute );
+        attribute.setCode( strCode );
+        attribute.setSearchable( true );
+
+        return attribute;
+    }
+
+    /**
+     * Builds a text of random words, with some html
+     * @param random the random generator
+     * @param nLength the length of the text
+     * @return the text
+     */
+    private static String newText( Random random, int nLength )
+    {
+        StringBuilder sbText = new StringBuilder( nLength + 20 );
+
+        while ( sbText.length( ) < nLength )
+        {
+            sbText.append( WORDS[random.nextInt( WORDS.length )] ).append( ' ' );
+        }
+
+        return sbText.toString( );
+    }
+}
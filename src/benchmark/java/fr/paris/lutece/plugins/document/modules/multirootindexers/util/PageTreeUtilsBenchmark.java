@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.util;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.benchmark.BenchmarkContext;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageTreeSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the resolution of the subtree of the root page, on generated page
+ * trees of various shapes, from an in-memory page tree instead of core_page :
+ * <ul>
+ * <li>WIDE : all the pages are children of the root</li>
+ * <li>BALANCED : each page has up to 8 children</li>
+ * <li>DEEP : branches of 100 pages under the root</li>
+ * <li>RANDOM : the parent of each page is a random previous page</li>
+ * </ul>
+ * Half of the pages are under another root, so that the resolution skips
+ * them.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class PageTreeUtilsBenchmark
+{
+    private static final int ROOT_ID = 1;
+    private static final int OTHER_ROOT_ID = 2;
+    private static final int FAN_OUT = 8;
+    private static final int BRANCH_DEPTH = 100;
+    private static final long SEED = 42L;
+
+    /** Shape of the tree */
+    @Param( { "WIDE", "BALANCED", "DEEP", "RANDOM" } )
+    public String _strShape;
+
+    /** Number of pages */
+    @Param( { "1000", "50000" } )
+    public int _nPages;
+
+    private int[] _nIdsPages;
+    private int[] _nIdsParents;
+    private PageTreeSnapshot _snapshot;
+
+    /**
+     * Generates the tree
+     */
+    @Setup
+    public void setUp(  )
+    {
+        BenchmarkContext.init(  );
+
+        Random random = new Random( SEED );
+        _nIdsPages = new int[_nPages];
+        _nIdsParents = new int[_nPages];
+
+        // both roots are children of the (missing) page 0
+        _nIdsPages[0] = ROOT_ID;
+        _nIdsPages[1] = OTHER_ROOT_ID;
+
+        for ( int i = 2; i < _nPages; i++ )
+        {
+            _nIdsPages[i] = i + 1;
+            _nIdsParents[i] = getParentIndex( i, random ) + 1;
+        }
+
+        _snapshot = new PageTreeSnapshot( _nIdsPages, _nIdsParents, _nPages );
+    }
+
+    /**
+     * Subtree of the root, from a loaded page tree
+     * @return the page ids
+     */
+    @Benchmark
+    public Set<Integer> getListPagesIdsFromRoot(  )
+    {
+        return PageTreeUtils.getListPagesIdsFromRoot( _snapshot, ROOT_ID );
+    }
+
+    /**
+     * Page tree loading (the query excepted) and subtree of the root
+     * @return the page ids
+     */
+    @Benchmark
+    public Set<Integer> loadAndGetListPagesIdsFromRoot(  )
+    {
+        return PageTreeUtils.getListPagesIdsFromRoot( new PageTreeSnapshot( _nIdsPages, _nIdsParents, _nPages ),
+                ROOT_ID );
+    }
+
+    /**
+     * Gets the index of the parent of a page, the pages with an even index
+     * being under the root and the others under the other root
+     * @param nIndex the index of the page, at least 2
+     * @param random the random generator
+     * @return the index of the parent
+     */
+    private int getParentIndex( int nIndex, Random random )
+    {
+        int nRootIndex = nIndex % 2;
+        int nRank = nIndex / 2; // rank of the page in its tree, the root excluded, from 1
+
+        if ( "WIDE".equals( _strShape ) )
+        {
+            return nRootIndex;
+        }
+
+        if ( "BALANCED".equals( _strShape ) )
+        {
+            int nParentRank = ( nRank - 1 ) / FAN_OUT;
+
+            return ( nParentRank == 0 ) ? nRootIndex : ( ( nParentRank * 2 ) + nRootIndex );
+        }
+
+        if ( "DEEP".equals( _strShape ) )
+        {
+            return ( ( ( nRank - 1 ) % BRANCH_DEPTH ) == 0 ) ? nRootIndex : ( nIndex - 2 );
+        }
+
+        int nParentRank = random.nextInt( nRank );
+
+        return ( nParentRank == 0 ) ? nRootIndex : ( ( nParentRank * 2 ) + nRootIndex );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.document;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.io.InputStream;
+
+import java.sql.Timestamp;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Bulk loading of the documents to index.
+ */
+public interface IMultiRootDocumentDAO
+{
+    /**
+     * Loads the documents with their attributes, using a few set-based
+     * queries. The binary values are not loaded, only their content type and
+     * whether they are set, see {@link #openBinaryValue(int, int, Plugin)}.
+     * @param collectionIdsDocuments the ids of the documents
+     * @param plugin the document plugin
+     * @return the documents by id. Unknown ids are not in the map.
+     */
+    Map<Integer, Document> loadDocuments( Collection<Integer> collectionIdsDocuments, Plugin plugin );
+
+    /**
+     * Opens a stream over the binary value of an attribute
+     * @param nIdDocument the document id
+     * @param nIdAttribute the attribute id
+     * @param plugin the document plugin
+     * @return the stream, to be closed by the caller, or null if there is no
+     *         binary value
+     */
+    InputStream openBinaryValue( int nIdDocument, int nIdAttribute, Plugin plugin );
+
+    /**
+     * Loads the modification dates of documents, without their attributes
+     * @param collectionIdsDocuments the ids of the documents
+     * @param plugin the document plugin
+     * @return the modification dates by document id. Unknown ids are not in
+     *         the map.
+     */
+    Map<Integer, Timestamp> loadModificationDates( Collection<Integer> collectionIdsDocuments, Plugin plugin );
+
+    /**
+     * Loads the portlets of a type on pages, with the role of their page, in
+     * the default pool
+     * @param strIdPortletType the portlet type
+     * @param collectionIdsPages the ids of the pages
+     * @param mapRoles the map the roles are added to, by portlet id
+     */
+    void loadPortletRoles( String strIdPortletType, Collection<Integer> collectionIdsPages,
+            Map<Integer, String> mapRoles );
+
+    /**
+     * Loads the documents published in portlets
+     * @param collectionIdsPortlets the ids of the portlets
+     * @param plugin the document plugin
+     * @param mapPortlets the map the ids of the portlets are added to, by
+     *            document id, in publication order
+     */
+    void loadPublications( Collection<Integer> collectionIdsPortlets, Plugin plugin,
+            Map<Integer, List<Integer>> mapPortlets );
+}
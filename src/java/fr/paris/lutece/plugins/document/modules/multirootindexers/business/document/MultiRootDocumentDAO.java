@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.document;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.business.attributes.DocumentAttribute;
+import fr.paris.lutece.plugins.document.business.publication.DocumentPublished;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.io.InputStream;
+
+import java.sql.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Loads documents and attributes with one query each for a whole batch of
+ * documents. Binary values are streamed one at a time. The content read is the
+ * one read by
+ * {@link fr.paris.lutece.plugins.document.business.DocumentHome#findByPrimaryKey(int)}.
+ */
+public class MultiRootDocumentDAO implements IMultiRootDocumentDAO
+{
+    private static final String SQL_QUERY_SELECT_DOCUMENTS = "SELECT a.id_document, a.code_document_type, a.title, a.date_creation," +
+        " a.date_modification, b.document_type_name, a.document_summary, a.xml_metadata, a.id_space" +
+        " FROM document a INNER JOIN document_type b ON a.code_document_type = b.code_document_type" +
+        " WHERE a.id_document IN ( ";
+    private static final String SQL_QUERY_SELECT_ATTRIBUTES = "SELECT d.id_document, a.id_document_attr, a.code, a.code_attr_type," +
+        " a.document_type_attr_name, a.description, a.attr_order, a.required, a.searchable, c.text_value, c.mime_type," +
+        " CASE WHEN c.binary_value IS NULL THEN 0 ELSE 1 END" +
+        " FROM document d INNER JOIN document_type_attr a ON a.code_document_type = d.code_document_type" +
+        " LEFT OUTER JOIN document_content c ON c.id_document = d.id_document AND c.id_document_attr = a.id_document_attr" +
+        " AND c.validated = 0 WHERE d.id_document IN ( ";
+    private static final String SQL_ORDER_BY_ATTRIBUTES = " ORDER BY d.id_document, a.attr_order";
+    private static final String SQL_QUERY_SELECT_BINARY_VALUE = "SELECT binary_value FROM document_content" +
+        " WHERE id_document = ? AND id_document_attr = ? AND validated = 0";
+    private static final String SQL_QUERY_SELECT_MODIFICATION_DATES = "SELECT id_document, date_modification FROM document" +
+        " WHERE id_document IN ( ";
+    private static final String SQL_QUERY_SELECT_PORTLET_ROLES = "SELECT p.id_portlet, g.role FROM core_portlet p" +
+        " INNER JOIN core_page g ON g.id_page = p.id_page WHERE p.id_page IN ( ";
+    private static final String SQL_FILTER_PORTLET_TYPE = " AND p.id_portlet_type = ?";
+    private static final String SQL_QUERY_SELECT_PUBLICATIONS = "SELECT b.id_document, b.id_portlet FROM document_published b" +
+        " INNER JOIN document a ON a.id_document = b.id_document WHERE b.id_portlet IN ( ";
+    private static final String SQL_FILTER_PUBLISHED = " AND b.status = ? ORDER BY b.id_portlet, b.document_order";
+    private static final String SQL_CLOSE_IN = " )";
+    private static final String SQL_PARAMETER = "?";
+    private static final String SQL_SEPARATOR = ",";
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, Document> loadDocuments( Collection<Integer> collectionIdsDocuments, Plugin plugin )
+    {
+        Map<Integer, Document> mapDocuments = new HashMap<Integer, Document>( collectionIdsDocuments.size(  ) );
+
+        if ( collectionIdsDocuments.isEmpty(  ) )
+        {
+            return mapDocuments;
+        }
+
+        String strIn = buildInClause( collectionIdsDocuments.size(  ) );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_DOCUMENTS + strIn + SQL_CLOSE_IN, plugin );
+        setIds( daoUtil, collectionIdsDocuments );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            Document document = new Document(  );
+            document.setId( daoUtil.getInt( 1 ) );
+            document.setCodeDocumentType( daoUtil.getString( 2 ) );
+            document.setTitle( daoUtil.getString( 3 ) );
+            document.setDateCreation( daoUtil.getTimestamp( 4 ) );
+            document.setDateModification( daoUtil.getTimestamp( 5 ) );
+            document.setType( daoUtil.getString( 6 ) );
+            document.setSummary( daoUtil.getString( 7 ) );
+            document.setXmlMetadata( daoUtil.getString( 8 ) );
+            document.setSpaceId( daoUtil.getInt( 9 ) );
+            document.setAttributes( new ArrayList<DocumentAttribute>(  ) );
+            mapDocuments.put( document.getId(  ), document );
+        }
+
+        daoUtil.free(  );
+
+        if ( !mapDocuments.isEmpty(  ) )
+        {
+            loadAttributes( mapDocuments, plugin );
+        }
+
+        return mapDocuments;
+    }
+
+    /**
+     * Loads the attributes of the documents
+     * @param mapDocuments the documents by id
+     * @param plugin the plugin
+     */
+    private void loadAttributes( Map<Integer, Document> mapDocuments, Plugin plugin )
+    {
+        String strIn = buildInClause( mapDocuments.size(  ) );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ATTRIBUTES + strIn + SQL_CLOSE_IN + SQL_ORDER_BY_ATTRIBUTES,
+                plugin );
+        setIds( daoUtil, mapDocuments.keySet(  ) );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            Document document = mapDocuments.get( daoUtil.getInt( 1 ) );
+
+            DocumentAttribute attribute = new DocumentAttribute(  );
+            attribute.setId( daoUtil.getInt( 2 ) );
+            attribute.setCode( daoUtil.getString( 3 ) );
+            attribute.setCodeAttributeType( daoUtil.getString( 4 ) );
+            attribute.setName( daoUtil.getString( 5 ) );
+            attribute.setDescription( daoUtil.getString( 6 ) );
+            attribute.setAttributeOrder( daoUtil.getInt( 7 ) );
+            attribute.setRequired( daoUtil.getInt( 8 ) != 0 );
+            attribute.setSearchable( daoUtil.getInt( 9 ) != 0 );
+            attribute.setTextValue( daoUtil.getString( 10 ) );
+            attribute.setValueContentType( daoUtil.getString( 11 ) );
+            attribute.setBinary( daoUtil.getInt( 12 ) != 0 );
+            document.getAttributes(  ).add( attribute );
+        }
+
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public InputStream openBinaryValue( int nIdDocument, int nIdAttribute, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BINARY_VALUE, plugin );
+        daoUtil.setInt( 1, nIdDocument );
+        daoUtil.setInt( 2, nIdAttribute );
+        daoUtil.executeQuery(  );
+
+        InputStream in = null;
+
+        if ( daoUtil.next(  ) )
+        {
+            in = daoUtil.getBinaryStream( 1 );
+        }
+
+        if ( in == null )
+        {
+            daoUtil.free(  );
+
+            return null;
+        }
+
+        return new BinaryValueInputStream( in, daoUtil );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, Timestamp> loadModificationDates( Collection<Integer> collectionIdsDocuments, Plugin plugin )
+    {
+        Map<Integer, Timestamp> mapDates = new HashMap<Integer, Timestamp>( collectionIdsDocuments.size(  ) );
+
+        if ( collectionIdsDocuments.isEmpty(  ) )
+        {
+            return mapDates;
+        }
+
+        String strIn = buildInClause( collectionIdsDocuments.size(  ) );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_MODIFICATION_DATES + strIn + SQL_CLOSE_IN, plugin );
+        setIds( daoUtil, collectionIdsDocuments );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            mapDates.put( daoUtil.getInt( 1 ), daoUtil.getTimestamp( 2 ) );
+        }
+
+        daoUtil.free(  );
+
+        return mapDates;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void loadPortletRoles( String strIdPortletType, Collection<Integer> collectionIdsPages,
+            Map<Integer, String> mapRoles )
+    {
+        if ( collectionIdsPages.isEmpty(  ) )
+        {
+            return;
+        }
+
+        String strIn = buildInClause( collectionIdsPages.size(  ) );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PORTLET_ROLES + strIn + SQL_CLOSE_IN +
+                SQL_FILTER_PORTLET_TYPE );
+        setIds( daoUtil, collectionIdsPages );
+        daoUtil.setString( collectionIdsPages.size(  ) + 1, strIdPortletType );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            mapRoles.put( daoUtil.getInt( 1 ), daoUtil.getString( 2 ) );
+        }
+
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void loadPublications( Collection<Integer> collectionIdsPortlets, Plugin plugin,
+            Map<Integer, List<Integer>> mapPortlets )
+    {
+        if ( collectionIdsPortlets.isEmpty(  ) )
+        {
+            return;
+        }
+
+        String strIn = buildInClause( collectionIdsPortlets.size(  ) );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PUBLICATIONS + strIn + SQL_CLOSE_IN + SQL_FILTER_PUBLISHED,
+                plugin );
+        setIds( daoUtil, collectionIdsPortlets );
+        daoUtil.setInt( collectionIdsPortlets.size(  ) + 1, DocumentPublished.STATUS_PUBLISHED );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            int nIdDocument = daoUtil.getInt( 1 );
+            List<Integer> listIdsPortlets = mapPortlets.get( nIdDocument );
+
+            if ( listIdsPortlets == null )
+            {
+                listIdsPortlets = new ArrayList<Integer>( 1 );
+                mapPortlets.put( nIdDocument, listIdsPortlets );
+            }
+
+            listIdsPortlets.add( daoUtil.getInt( 2 ) );
+        }
+
+        daoUtil.free(  );
+    }
+
+    /**
+     * Builds the parameters of an IN clause
+     * @param nCount the number of parameters
+     * @return the parameters, separated by commas
+     */
+    static String buildInClause( int nCount )
+    {
+        StringBuilder sbIn = new StringBuilder( nCount * 2 );
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            if ( i > 0 )
+            {
+                sbIn.append( SQL_SEPARATOR );
+            }
+
+            sbIn.append( SQL_PARAMETER );
+        }
+
+        return sbIn.toString(  );
+    }
+
+    /**
+     * Sets the ids as parameters of the query, starting at index 1
+     * @param daoUtil the daoUtil
+     * @param collectionIds the ids
+     */
+    private static void setIds( DAOUtil daoUtil, Collection<Integer> collectionIds )
+    {
+        int nIndex = 1;
+
+        for ( Integer nId : collectionIds )
+        {
+            daoUtil.setInt( nIndex++, nId );
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.document;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.service.DocumentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.io.InputStream;
+
+import java.sql.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Loads the documents to index by batches, instead of one
+ * {@link fr.paris.lutece.plugins.document.business.DocumentHome#findByPrimaryKey(int)}
+ * per document.
+ */
+public final class MultiRootDocumentHome
+{
+    private static final String PROPERTY_BATCH_SIZE = "document-multirootindexers.loader.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final String PROPERTY_DISCOVERY_BATCH_SIZE = "document-multirootindexers.discovery.batch.size";
+    private static final int DEFAULT_DISCOVERY_BATCH_SIZE = 1000;
+    private static IMultiRootDocumentDAO _dao = (IMultiRootDocumentDAO) SpringContextService.getBean( 
+            "document-multirootindexers.multiRootDocumentDAO" );
+
+    /**
+     * Private constructor
+     */
+    private MultiRootDocumentHome(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Gets the number of documents loaded per batch
+     * @return the batch size
+     */
+    public static int getBatchSize(  )
+    {
+        return Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+    }
+
+    /**
+     * Loads the documents with all their searchable attributes
+     * @param collectionIdsDocuments the ids of the documents
+     * @return the documents by id. Unknown ids are not in the map.
+     */
+    public static Map<Integer, Document> findByPrimaryKeys( Collection<Integer> collectionIdsDocuments )
+    {
+        Plugin plugin = PluginService.getPlugin( DocumentPlugin.PLUGIN_NAME );
+        int nBatchSize = getBatchSize(  );
+
+        if ( collectionIdsDocuments.size(  ) <= nBatchSize )
+        {
+            return _dao.loadDocuments( collectionIdsDocuments, plugin );
+        }
+
+        Map<Integer, Document> mapDocuments = new HashMap<Integer, Document>( collectionIdsDocuments.size(  ) );
+        List<Integer> listBatch = new ArrayList<Integer>( nBatchSize );
+
+        for ( Integer nIdDocument : collectionIdsDocuments )
+        {
+            listBatch.add( nIdDocument );
+
+            if ( listBatch.size(  ) == nBatchSize )
+            {
+                mapDocuments.putAll( _dao.loadDocuments( listBatch, plugin ) );
+                listBatch.clear(  );
+            }
+        }
+
+        if ( !listBatch.isEmpty(  ) )
+        {
+            mapDocuments.putAll( _dao.loadDocuments( listBatch, plugin ) );
+        }
+
+        return mapDocuments;
+    }
+
+    /**
+     * Loads the modification dates of documents
+     * @param collectionIdsDocuments the ids of the documents
+     * @return the modification dates by document id. Unknown ids are not in
+     *         the map.
+     */
+    public static Map<Integer, Timestamp> findModificationDates( Collection<Integer> collectionIdsDocuments )
+    {
+        Plugin plugin = PluginService.getPlugin( DocumentPlugin.PLUGIN_NAME );
+        int nBatchSize = getBatchSize(  );
+        Map<Integer, Timestamp> mapDates = new HashMap<Integer, Timestamp>( collectionIdsDocuments.size(  ) );
+        List<Integer> listBatch = new ArrayList<Integer>( Math.min( nBatchSize, collectionIdsDocuments.size(  ) ) );
+
+        for ( Integer nIdDocument : collectionIdsDocuments )
+        {
+            listBatch.add( nIdDocument );
+
+            if ( listBatch.size(  ) == nBatchSize )
+            {
+                mapDates.putAll( _dao.loadModificationDates( listBatch, plugin ) );
+                listBatch.clear(  );
+            }
+        }
+
+        if ( !listBatch.isEmpty(  ) )
+        {
+            mapDates.putAll( _dao.loadModificationDates( listBatch, plugin ) );
+        }
+
+        return mapDates;
+    }
+
+    /**
+     * Finds the portlets of a type on pages, with the role of their page. The
+     * pages are filtered by the database, by batches of
+     * <code>document-multirootindexers.discovery.batch.size</code> ids.
+     * @param strIdPortletType the portlet type
+     * @param collectionIdsPages the ids of the pages
+     * @return the roles of the pages of the portlets, by portlet id
+     */
+    public static Map<Integer, String> findPortletRoles( String strIdPortletType,
+            Collection<Integer> collectionIdsPages )
+    {
+        int nBatchSize = getDiscoveryBatchSize(  );
+        Map<Integer, String> mapRoles = new LinkedHashMap<Integer, String>(  );
+        List<Integer> listBatch = new ArrayList<Integer>( Math.min( nBatchSize, collectionIdsPages.size(  ) ) );
+
+        for ( Integer nIdPage : collectionIdsPages )
+        {
+            listBatch.add( nIdPage );
+
+            if ( listBatch.size(  ) == nBatchSize )
+            {
+                _dao.loadPortletRoles( strIdPortletType, listBatch, mapRoles );
+                listBatch.clear(  );
+            }
+        }
+
+        _dao.loadPortletRoles( strIdPortletType, listBatch, mapRoles );
+
+        return mapRoles;
+    }
+
+    /**
+     * Finds the documents published in portlets, by batches of
+     * <code>document-multirootindexers.discovery.batch.size</code> portlets
+     * @param collectionIdsPortlets the ids of the portlets
+     * @return the ids of the portlets each document is published in, by
+     *         document id, in discovery order
+     */
+    public static Map<Integer, List<Integer>> findPublications( Collection<Integer> collectionIdsPortlets )
+    {
+        Plugin plugin = PluginService.getPlugin( DocumentPlugin.PLUGIN_NAME );
+        int nBatchSize = getDiscoveryBatchSize(  );
+        Map<Integer, List<Integer>> mapPortlets = new LinkedHashMap<Integer, List<Integer>>(  );
+        List<Integer> listBatch = new ArrayList<Integer>( Math.min( nBatchSize, collectionIdsPortlets.size(  ) ) );
+
+        for ( Integer nIdPortlet : collectionIdsPortlets )
+        {
+            listBatch.add( nIdPortlet );
+
+            if ( listBatch.size(  ) == nBatchSize )
+            {
+                _dao.loadPublications( listBatch, plugin, mapPortlets );
+                listBatch.clear(  );
+            }
+        }
+
+        _dao.loadPublications( listBatch, plugin, mapPortlets );
+
+        return mapPortlets;
+    }
+
+    /**
+     * Gets the number of ids per query of the discovery
+     * @return the batch size
+     */
+    private static int getDiscoveryBatchSize(  )
+    {
+        return Math.max( 1,
+                AppPropertiesService.getPropertyInt( PROPERTY_DISCOVERY_BATCH_SIZE, DEFAULT_DISCOVERY_BATCH_SIZE ) );
+    }
+
+    /**
+     * Opens a stream over the binary value of an attribute, without loading
+     * it in memory
+     * @param nIdDocument the document id
+     * @param nIdAttribute the attribute id
+     * @return the stream, to be closed by the caller, or null if there is no
+     *         binary value
+     */
+    public static InputStream openBinaryValue( int nIdDocument, int nIdAttribute )
+    {
+        return _dao.openBinaryValue( nIdDocument, nIdAttribute, PluginService.getPlugin( DocumentPlugin.PLUGIN_NAME ) );
+    }
+
+    /**
+     * Loads a document with all its searchable attributes
+     * @param nIdDocument the id of the document
+     * @return the document, or null if not found
+     */
+    public static Document findByPrimaryKey( int nIdDocument )
+    {
+        List<Integer> listIds = new ArrayList<Integer>( 1 );
+        listIds.add( nIdDocument );
+
+        return findByPrimaryKeys( listIds ).get( nIdDocument );
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.service.search.IndexationService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Collapses redundant indexer actions. <br>
+ * Actions are fed from the oldest to the newest. A newer action supersedes
+ * the older actions with the same document, portlet and indexer, and an action
+ * on all the portlets of a document also supersedes the older actions on a
+ * single portlet of this document. The newer action takes the task covering
+ * all of them :
+ * <ul>
+ * <li>a delete stays a delete</li>
+ * <li>creates only are still a create</li>
+ * <li>otherwise a modify, which deletes then indexes the document again : a
+ * delete followed by a create becomes a modify, so that the document is not
+ * deleted after being created when the tasks are processed by groups</li>
+ * </ul>
+ * The class also holds the counters of the actions eliminated.
+ */
+public final class IndexerActionCoalescer
+{
+    private static final String PROPERTY_ON_INSERT = "document-multirootindexers.indexerAction.coalesce.onInsert";
+    private static final String KEY_SEPARATOR = "|";
+    private static final AtomicLong _lCoalescedOnInsert = new AtomicLong(  );
+    private static final AtomicLong _lCoalescedPending = new AtomicLong(  );
+    private final Map<String, IndexerAction> _mapActions = new LinkedHashMap<String, IndexerAction>(  );
+    private final Map<String, Set<String>> _mapPortletKeysByDocument = new HashMap<String, Set<String>>(  );
+    private final List<IndexerAction> _listSuperseded = new ArrayList<IndexerAction>(  );
+    private final Map<Integer, Integer> _mapOriginalTasks = new HashMap<Integer, Integer>(  );
+
+    /**
+     * Tells whether the actions inserted by batches are coalesced
+     * @return true if enabled, otherwise false
+     */
+    static boolean isEnabledOnInsert(  )
+    {
+        return Boolean.parseBoolean( AppPropertiesService.getProperty( PROPERTY_ON_INSERT, "false" ) );
+    }
+
+    /**
+     * Gets the number of actions eliminated when inserting actions
+     * @return the number of actions
+     */
+    public static long getCoalescedOnInsert(  )
+    {
+        return _lCoalescedOnInsert.get(  );
+    }
+
+    /**
+     * Gets the number of pending actions eliminated by
+     * {@link MultiRootIndexerActionDAO#coalesce()}
+     * @return the number of actions
+     */
+    public static long getCoalescedPending(  )
+    {
+        return _lCoalescedPending.get(  );
+    }
+
+    /**
+     * Counts actions eliminated when inserting
+     * @param nCount the number of actions
+     */
+    static void addCoalescedOnInsert( int nCount )
+    {
+        _lCoalescedOnInsert.addAndGet( nCount );
+    }
+
+    /**
+     * Counts pending actions eliminated
+     * @param nCount the number of actions
+     */
+    static void addCoalescedPending( int nCount )
+    {
+        _lCoalescedPending.addAndGet( nCount );
+    }
+
+    /**
+     * Gets the task covering an older task followed by a newer one
+     * @param nOlderTask the older task
+     * @param nNewerTask the newer task
+     * @return the task
+     */
+    static int merge( int nOlderTask, int nNewerTask )
+    {
+        if ( nNewerTask == IndexerAction.TASK_DELETE )
+        {
+            return IndexerAction.TASK_DELETE;
+        }
+
+        if ( ( nOlderTask == IndexerAction.TASK_CREATE ) && ( nNewerTask == IndexerAction.TASK_CREATE ) )
+        {
+            return IndexerAction.TASK_CREATE;
+        }
+
+        return IndexerAction.TASK_MODIFY;
+    }
+
+    /**
+     * Tells whether an action supersedes an older one
+     * @param newer the newer action
+     * @param older the older action
+     * @return true if the older action is redundant
+     */
+    static boolean supersedes( IndexerAction newer, IndexerAction older )
+    {
+        if ( !getDocumentKey( newer ).equals( getDocumentKey( older ) ) )
+        {
+            return false;
+        }
+
+        return ( newer.getIdPortlet(  ) == older.getIdPortlet(  ) ) ||
+        ( newer.getIdPortlet(  ) == IndexationService.ALL_DOCUMENT );
+    }
+
+    /**
+     * Adds an action, newer than the ones already added. The action gets the
+     * task of the actions it supersedes merged in.
+     * @param action the action
+     */
+    void add( IndexerAction action )
+    {
+        String strKey = getKey( action );
+        String strDocumentKey = getDocumentKey( action );
+        List<IndexerAction> listOlder = new ArrayList<IndexerAction>( 1 );
+        IndexerAction older = _mapActions.remove( strKey );
+
+        if ( older != null )
+        {
+            listOlder.add( older );
+        }
+
+        if ( action.getIdPortlet(  ) == IndexationService.ALL_DOCUMENT )
+        {
+            Set<String> setPortletKeys = _mapPortletKeysByDocument.remove( strDocumentKey );
+
+            if ( setPortletKeys != null )
+            {
+                for ( String strPortletKey : setPortletKeys )
+                {
+                    older = _mapActions.remove( strPortletKey );
+
+                    if ( older != null )
+                    {
+                        listOlder.add( older );
+                    }
+                }
+            }
+        }
+        else
+        {
+            Set<String> setPortletKeys = _mapPortletKeysByDocument.get( strDocumentKey );
+
+            if ( setPortletKeys == null )
+            {
+                setPortletKeys = new LinkedHashSet<String>(  );
+                _mapPortletKeysByDocument.put( strDocumentKey, setPortletKeys );
+            }
+
+            setPortletKeys.add( strKey );
+        }
+
+        for ( IndexerAction actionOlder : listOlder )
+        {
+            _mapOriginalTasks.remove( actionOlder.getIdAction(  ) );
+
+            int nTask = merge( actionOlder.getIdTask(  ), action.getIdTask(  ) );
+
+            if ( ( nTask != action.getIdTask(  ) ) && !_mapOriginalTasks.containsKey( action.getIdAction(  ) ) )
+            {
+                _mapOriginalTasks.put( action.getIdAction(  ), action.getIdTask(  ) );
+            }
+
+            action.setIdTask( nTask );
+        }
+
+        _listSuperseded.addAll( listOlder );
+        _mapActions.put( strKey, action );
+    }
+
+    /**
+     * Gets the remaining actions, in the order of their last occurrence
+     * @return the actions
+     */
+    Collection<IndexerAction> getActions(  )
+    {
+        return _mapActions.values(  );
+    }
+
+    /**
+     * Tells whether the task of a remaining action has been changed by the
+     * actions it superseded
+     * @param action the action
+     * @return true if its task must be updated
+     */
+    boolean isTaskChanged( IndexerAction action )
+    {
+        Integer nOriginalTask = _mapOriginalTasks.get( action.getIdAction(  ) );
+
+        return ( nOriginalTask != null ) && ( nOriginalTask != action.getIdTask(  ) );
+    }
+
+    /**
+     * Gets the actions superseded by newer ones. The list can be cleared once
+     * they have been handled.
+     * @return the actions
+     */
+    List<IndexerAction> getSuperseded(  )
+    {
+        return _listSuperseded;
+    }
+
+    /**
+     * Builds the key of an action
+     * @param action the action
+     * @return the key
+     */
+    private static String getKey( IndexerAction action )
+    {
+        return getDocumentKey( action ) + KEY_SEPARATOR + action.getIdPortlet(  );
+    }
+
+    /**
+     * Builds the key of the document of an action
+     * @param action the action
+     * @return the key
+     */
+    static String getDocumentKey( IndexerAction action )
+    {
+        return action.getIndexerName(  ) + KEY_SEPARATOR + action.getIdDocument(  );
+    }
+}
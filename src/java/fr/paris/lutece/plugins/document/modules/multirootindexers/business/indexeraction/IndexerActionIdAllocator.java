@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+import fr.paris.lutece.portal.service.database.TransactionManager;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.SQLException;
+
+
+/**
+ * Allocates the ids of an indexer action table by blocks. <br>
+ * The next free id of each table is kept in the
+ * document_multirootindexers_id_block table : reserving a block is a single
+ * transaction which increments it, so that blocks never overlap, even between
+ * the nodes of a cluster. Ids are then handed out from memory. <br>
+ * A block is only handed out once its transaction is committed, and ids must
+ * be reserved before the transaction inserting the actions is started : the
+ * row of the table is then never locked by the insert, and a rolled back
+ * insert only leaves unused ids.
+ */
+final class IndexerActionIdAllocator
+{
+    private static final String SQL_QUERY_SELECT_NEXT_ID = "SELECT next_id FROM document_multirootindexers_id_block WHERE table_name = ?";
+    private static final String SQL_QUERY_INSERT_NEXT_ID = "INSERT INTO document_multirootindexers_id_block ( table_name, next_id ) VALUES ( ?, ? )";
+    private static final String SQL_QUERY_INCREMENT_NEXT_ID = "UPDATE document_multirootindexers_id_block SET next_id = next_id + ? WHERE table_name = ?";
+    private static final String SQL_QUERY_SELECT_MAX_ID = "SELECT max( id_action ) FROM ";
+
+    /** Class of the SQL states of the integrity constraint violations, such as a duplicate key */
+    private static final String SQL_STATE_INTEGRITY_CONSTRAINT = "23";
+    private final String _strTableName;
+    private final int _nBlockSize;
+    private int _nNextId;
+    private int _nEndId;
+
+    /**
+     * Constructor
+     * @param strTableName the indexer action table
+     * @param nBlockSize the number of ids reserved at once
+     */
+    IndexerActionIdAllocator( String strTableName, int nBlockSize )
+    {
+        _strTableName = strTableName;
+        _nBlockSize = Math.max( 1, nBlockSize );
+    }
+
+    /**
+     * Gets new ids, reserving new blocks if the current one is exhausted. Must
+     * not be called inside a transaction.
+     * @param nCount the number of ids
+     * @return the ids
+     */
+    synchronized int[] nextIds( int nCount )
+    {
+        int[] nIds = new int[nCount];
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            if ( _nNextId >= _nEndId )
+            {
+                // a large batch gets all its remaining ids at once
+                reserveBlock( Math.max( _nBlockSize, nCount - i ) );
+            }
+
+            nIds[i] = _nNextId++;
+        }
+
+        return nIds;
+    }
+
+    /**
+     * Reserves a block of ids
+     * @param nSize the number of ids of the block
+     */
+    private void reserveBlock( int nSize )
+    {
+        int nEndId;
+
+        try
+        {
+            nEndId = reserveBlockInTransaction( nSize );
+        }
+        catch ( AppException e )
+        {
+            if ( !isDuplicateKey( e ) )
+            {
+                throw e;
+            }
+
+            // a concurrent first allocation has created the row in the meantime : the retry takes the update path
+            nEndId = reserveBlockInTransaction( nSize );
+        }
+
+        _nNextId = nEndId - nSize;
+        _nEndId = nEndId;
+    }
+
+    /**
+     * Moves the next free id of the table after a new block, in one transaction
+     * @param nSize the number of ids of the block
+     * @return the end of the block (excluded)
+     */
+    private int reserveBlockInTransaction( int nSize )
+    {
+        TransactionManager.beginTransaction( null );
+
+        try
+        {
+            int nEndId;
+            Integer nNextId = selectNextId(  );
+
+            if ( nNextId == null )
+            {
+                // first allocation for this table : starts after the existing actions.
+                // A concurrent first allocation fails on the primary key and is rolled back.
+                nEndId = selectMaxId(  ) + 1 + nSize;
+                insertNextId( nEndId );
+            }
+            else
+            {
+                // the update locks the row until the commit
+                incrementNextId( nSize );
+                nEndId = selectNextId(  );
+            }
+
+            TransactionManager.commitTransaction( null );
+
+            return nEndId;
+        }
+        catch ( Exception e )
+        {
+            TransactionManager.rollBack( null );
+            throw new AppException( "Unable to reserve ids for " + _strTableName + " : " + e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Tells whether a failure comes from an integrity constraint violation,
+     * such as the duplicate primary key of a concurrent first allocation
+     * @param e the failure
+     * @return true if the first SQL exception of the causes is a constraint
+     *         violation
+     */
+    private static boolean isDuplicateKey( Throwable e )
+    {
+        for ( Throwable cause = e; cause != null; cause = cause.getCause(  ) )
+        {
+            if ( cause instanceof SQLException )
+            {
+                String strSQLState = ( (SQLException) cause ).getSQLState(  );
+
+                return ( strSQLState != null ) && strSQLState.startsWith( SQL_STATE_INTEGRITY_CONSTRAINT );
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the next free id of the table
+     * @return the next free id, or null if no id has been reserved yet
+     */
+    private Integer selectNextId(  )
+    {
+        Integer nNextId = null;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_NEXT_ID );
+        daoUtil.setString( 1, _strTableName );
+        daoUtil.executeQuery(  );
+
+        if ( daoUtil.next(  ) )
+        {
+            nNextId = daoUtil.getInt( 1 );
+        }
+
+        daoUtil.free(  );
+
+        return nNextId;
+    }
+
+    /**
+     * Reads the greatest id of the table
+     * @return the greatest id, 0 if the table is empty
+     */
+    private int selectMaxId(  )
+    {
+        int nMaxId = 0;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_MAX_ID + _strTableName );
+        daoUtil.executeQuery(  );
+
+        if ( daoUtil.next(  ) )
+        {
+            // max() of an empty table is null, read as 0
+            nMaxId = daoUtil.getInt( 1 );
+        }
+
+        daoUtil.free(  );
+
+        return nMaxId;
+    }
+
+    /**
+     * Creates the next free id of the table
+     * @param nNextId the next free id
+     */
+    private void insertNextId( int nNextId )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_NEXT_ID );
+        daoUtil.setString( 1, _strTableName );
+        daoUtil.setInt( 2, nNextId );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     * Moves the next free id of the table after a new block
+     * @param nSize the number of ids of the block
+     */
+    private void incrementNextId( int nSize )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_NEXT_ID );
+        daoUtil.setInt( 1, nSize );
+        daoUtil.setString( 2, _strTableName );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+}
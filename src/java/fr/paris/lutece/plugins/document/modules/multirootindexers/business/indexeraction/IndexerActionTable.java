@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+
+/**
+ * An indexer action table, with its queries built once.
+ */
+final class IndexerActionTable
+{
+    private static final String SQL_COLUMNS = "id_action,id_document,id_task,indexer_name,id_portlet";
+    private final String _strName;
+    private final String _strQueryFindByPrimaryKey;
+    private final String _strQueryInsert;
+    private final String _strQueryDelete;
+    private final String _strQueryDeleteBatch;
+    private final String _strQueryTruncate;
+    private final String _strQuerySelect;
+    private final String _strQuerySelectOrderedById;
+    private final String _strQuerySelectByDocuments;
+    private final String _strQueryUpdateTask;
+    private final IndexerActionIdAllocator _idAllocator;
+
+    /**
+     * Constructor
+     * @param strName the table name
+     * @param nIdBlockSize the number of ids reserved at once
+     */
+    IndexerActionTable( String strName, int nIdBlockSize )
+    {
+        _strName = strName;
+        _strQueryFindByPrimaryKey = "SELECT " + SQL_COLUMNS + " FROM " + strName + " WHERE id_action = ?";
+        _strQueryInsert = "INSERT INTO " + strName + "( " + SQL_COLUMNS + " ) VALUES(?,?,?,?,?)";
+        _strQueryDelete = "DELETE FROM " + strName + " WHERE id_action = ? ";
+        _strQueryDeleteBatch = "DELETE FROM " + strName + " WHERE id_action IN ( ";
+        _strQueryTruncate = "TRUNCATE " + strName;
+        _strQuerySelect = "SELECT " + SQL_COLUMNS + " FROM " + strName + " ";
+        _strQuerySelectOrderedById = _strQuerySelect + "ORDER BY id_action";
+        _strQuerySelectByDocuments = _strQuerySelect + "WHERE id_document IN ( ";
+        _strQueryUpdateTask = "UPDATE " + strName + " SET id_task = ? WHERE id_action = ?";
+        _idAllocator = new IndexerActionIdAllocator( strName, nIdBlockSize );
+    }
+
+    /**
+     * Gets the table name
+     * @return the table name
+     */
+    String getName(  )
+    {
+        return _strName;
+    }
+
+    /**
+     * Gets the query loading an action
+     * @return the query
+     */
+    String getQueryFindByPrimaryKey(  )
+    {
+        return _strQueryFindByPrimaryKey;
+    }
+
+    /**
+     * Gets the query inserting one action
+     * @return the query
+     */
+    String getQueryInsert(  )
+    {
+        return _strQueryInsert;
+    }
+
+    /**
+     * Gets the query deleting an action
+     * @return the query
+     */
+    String getQueryDelete(  )
+    {
+        return _strQueryDelete;
+    }
+
+    /**
+     * Gets the query deleting actions, without the parameters of the IN clause
+     * @return the query
+     */
+    String getQueryDeleteBatch(  )
+    {
+        return _strQueryDeleteBatch;
+    }
+
+    /**
+     * Gets the query deleting all the actions
+     * @return the query
+     */
+    String getQueryTruncate(  )
+    {
+        return _strQueryTruncate;
+    }
+
+    /**
+     * Gets the query selecting the actions, without filter
+     * @return the query
+     */
+    String getQuerySelect(  )
+    {
+        return _strQuerySelect;
+    }
+
+    /**
+     * Gets the query selecting all the actions, ordered by id
+     * @return the query
+     */
+    String getQuerySelectOrderedById(  )
+    {
+        return _strQuerySelectOrderedById;
+    }
+
+    /**
+     * Gets the query selecting the actions of documents, without the
+     * parameters of the IN clause
+     * @return the query
+     */
+    String getQuerySelectByDocuments(  )
+    {
+        return _strQuerySelectByDocuments;
+    }
+
+    /**
+     * Gets the query updating the task of an action
+     * @return the query
+     */
+    String getQueryUpdateTask(  )
+    {
+        return _strQueryUpdateTask;
+    }
+
+    /**
+     * Gets the allocator of the ids of the table
+     * @return the allocator
+     */
+    IndexerActionIdAllocator getIdAllocator(  )
+    {
+        return _idAllocator;
+    }
+}
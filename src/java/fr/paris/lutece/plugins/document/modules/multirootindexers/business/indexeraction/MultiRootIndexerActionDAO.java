@@ -36,15 +36,36 @@ package fr.paris.lutece.plugins.document.modules.multirootindexers.business.inde
 import fr.paris.lutece.portal.business.indexeraction.IIndexerActionDAO;
 import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
 import fr.paris.lutece.portal.business.indexeraction.IndexerActionFilter;
+import fr.paris.lutece.portal.service.database.TransactionManager;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.sql.DAOUtil;
 
+import org.apache.commons.lang.StringUtils;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 
 /**
- * Insert into multiple tables for indexer actions : core_indexer_action and core_indexer_action_en. <br>
- * Reads from only one table : {@link #setLang(String)} with {@link #LANG_ENGLISH} to use english tables.<br>
+ * Insert into multiple tables for indexer actions : core_indexer_action and one core_indexer_action_&lt;lang&gt;
+ * table per language listed in the document-multirootindexers.indexerAction.languages property
+ * (default : en). <br>
+ * Reads from only one table : {@link #setLang(String)} with one of the listed languages to use its table.<br>
+ * Ids are reserved by blocks, see {@link IndexerActionIdAllocator}, so that inserting a row is a single statement.<br>
+ * Rows are inserted one by one, with a statement prepared once per table : multi-row inserts are not
+ * supported by all the databases.<br>
+ * Actions can also be inserted by batches, see {@link #insert(Collection)}.<br>
+ * Redundant actions are collapsed when inserted by batches and by {@link #coalesce()}, see
+ * {@link IndexerActionCoalescer}.<br>
  * Update is not supported.
  */
 public class MultiRootIndexerActionDAO implements IIndexerActionDAO
@@ -52,35 +73,62 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
     // Constants
     public static final String CONSTANT_WHERE = " WHERE ";
     public static final String CONSTANT_AND = " AND ";
-
-    // queries for core_indexer_action
-    private static final String SQL_QUERY_NEW_PK_FR = "SELECT max( id_action ) FROM core_indexer_action";
-    private static final String SQL_QUERY_FIND_BY_PRIMARY_KEY_FR = "SELECT id_action,id_document,id_task,indexer_name, id_portlet" +
-        " FROM core_indexer_action WHERE id_action = ?";
-    private static final String SQL_QUERY_INSERT_FR = "INSERT INTO core_indexer_action( id_action,id_document,id_task ,indexer_name,id_portlet)" +
-        " VALUES(?,?,?,?,?)";
-    private static final String SQL_QUERY_DELETE_FR = "DELETE FROM core_indexer_action WHERE id_action = ? ";
-    private static final String SQL_QUERY_TRUNCATE_FR = "TRUNCATE core_indexer_action  ";
-
-    //private static final String SQL_QUERY_UPDATE_FR = "UPDATE core_indexer_action SET id_action=?,id_document=?,id_task=?,indexer_name=?,id_portlet=? WHERE id_action = ? ";
-    private static final String SQL_QUERY_SELECT_FR = "SELECT id_action,id_document,id_task,indexer_name,id_portlet" +
-        " FROM core_indexer_action ";
-
-    // queries for core_indexer_action_en
-    private static final String SQL_QUERY_NEW_PK_EN = "SELECT max( id_action ) FROM core_indexer_action_en";
-    private static final String SQL_QUERY_FIND_BY_PRIMARY_KEY_EN = "SELECT id_action,id_document,id_task,indexer_name, id_portlet" +
-        " FROM core_indexer_action_en WHERE id_action = ?";
-    private static final String SQL_QUERY_INSERT_EN = "INSERT INTO core_indexer_action_en( id_action,id_document,id_task ,indexer_name,id_portlet)" +
-        " VALUES(?,?,?,?,?)";
-    private static final String SQL_QUERY_DELETE_EN = "DELETE FROM core_indexer_action_en WHERE id_action = ? ";
-    private static final String SQL_QUERY_TRUNCATE_EN = "TRUNCATE core_indexer_action_en  ";
-
-    //private static final String SQL_QUERY_UPDATE_EN = "UPDATE core_indexer_action_en SET id_action=?,id_document=?,id_task=?,indexer_name=?,id_portlet=? WHERE id_action = ? ";
-    private static final String SQL_QUERY_SELECT_EN = "SELECT id_action,id_document,id_task,indexer_name,id_portlet" +
-        " FROM core_indexer_action_en ";
     private static final String SQL_FILTER_ID_TASK = " id_task = ? ";
-    private static final String LANG_ENGLISH = "en";
+    private static final String SQL_PARAMETER = "?";
+    private static final String SQL_SEPARATOR = ",";
+    private static final String SQL_CLOSE_IN = " )";
+    private static final String SQL_ORDER_BY_ID = " ORDER BY id_action";
+
+    /** Maximum number of ids bound to one statement */
+    private static final int BATCH_SIZE = 100;
+    private static final String TABLE_DEFAULT = "core_indexer_action";
+    private static final String TABLE_LANG_SEPARATOR = "_";
+    private static final String PROPERTY_LANGUAGES = "document-multirootindexers.indexerAction.languages";
+    private static final String DEFAULT_LANGUAGES = "en";
+    private static final String LANGUAGES_SEPARATOR = ",";
+    private static final Pattern PATTERN_LANGUAGE = Pattern.compile( "[a-z][a-z0-9_]*" );
+    private static final String PROPERTY_ID_BLOCK_SIZE = "document-multirootindexers.indexerAction.idBlock.size";
+    private static final int DEFAULT_ID_BLOCK_SIZE = 100;
+    private final Map<String, IndexerActionTable> _mapTablesByLang = new HashMap<String, IndexerActionTable>(  );
+    private final List<IndexerActionTable> _listTables = new ArrayList<IndexerActionTable>(  );
+    private final IndexerActionTable _tableDefault;
     private String _strLang;
+    private IndexerActionTable _tableRead;
+
+    /**
+     * Constructor. Builds the tables of the configured languages.
+     */
+    public MultiRootIndexerActionDAO(  )
+    {
+        int nBlockSize = AppPropertiesService.getPropertyInt( PROPERTY_ID_BLOCK_SIZE, DEFAULT_ID_BLOCK_SIZE );
+        String strLanguages = AppPropertiesService.getProperty( PROPERTY_LANGUAGES, DEFAULT_LANGUAGES );
+
+        for ( String strLang : strLanguages.split( LANGUAGES_SEPARATOR ) )
+        {
+            strLang = strLang.trim(  );
+
+            if ( StringUtils.isEmpty( strLang ) || _mapTablesByLang.containsKey( strLang ) )
+            {
+                continue;
+            }
+
+            if ( !PATTERN_LANGUAGE.matcher( strLang ).matches(  ) )
+            {
+                AppLogService.error( "Invalid indexer action language, ignored : " + strLang );
+
+                continue;
+            }
+
+            IndexerActionTable table = new IndexerActionTable( TABLE_DEFAULT + TABLE_LANG_SEPARATOR + strLang,
+                    nBlockSize );
+            _mapTablesByLang.put( strLang, table );
+            _listTables.add( table );
+        }
+
+        _tableDefault = new IndexerActionTable( TABLE_DEFAULT, nBlockSize );
+        _listTables.add( _tableDefault );
+        _tableRead = _tableDefault;
+    }
 
     /**
      * Gets the lang to use.
@@ -92,12 +140,15 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
     }
 
     /**
-     * Set to {@link #LANG_ENGLISH} to use the english table.
-     * @param strLang the language (only {@link #LANG_ENGLISH} supported, any other value will use default table).
+     * Sets the language whose table is read.
+     * @param strLang the language (one of the configured languages, any other value will use default table).
      */
     public void setLang( String strLang )
     {
+        IndexerActionTable table = ( strLang == null ) ? null : _mapTablesByLang.get( strLang );
+
         _strLang = strLang;
+        _tableRead = ( table == null ) ? _tableDefault : table;
     }
 
     /**
@@ -109,15 +160,14 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
         DAOUtil daoUtil = new DAOUtil( strQuery );
         daoUtil.executeQuery(  );
 
-        int nKey;
+        int nKey = 1;
 
-        if ( !daoUtil.next(  ) )
+        if ( daoUtil.next(  ) )
         {
-            // if the table is empty
-            nKey = 1;
+            // max() of an empty table is null, read as 0
+            nKey = daoUtil.getInt( 1 ) + 1;
         }
 
-        nKey = daoUtil.getInt( 1 ) + 1;
         daoUtil.free(  );
 
         return nKey;
@@ -125,48 +175,343 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
 
     /**
      *
-     * Inserts in two tables.
+     * Inserts in all the tables, with one row per table, in one
+     * transaction. The action is not coalesced : this is the path of the
+     * indexing events.
      * @param indexerAction indexerAction
      */
     public void insert( IndexerAction indexerAction )
     {
-        insert( SQL_QUERY_INSERT_EN, indexerAction, newPrimaryKey( SQL_QUERY_NEW_PK_EN ) );
-        insert( SQL_QUERY_INSERT_FR, indexerAction, newPrimaryKey( SQL_QUERY_NEW_PK_FR ) );
+        List<IndexerAction> listIndexerActions = Collections.singletonList( indexerAction );
+
+        // ids are reserved before the insert transaction, see IndexerActionIdAllocator
+        List<int[]> listIds = new ArrayList<int[]>( _listTables.size(  ) );
+
+        for ( IndexerActionTable table : _listTables )
+        {
+            listIds.add( table.getIdAllocator(  ).nextIds( 1 ) );
+        }
+
+        TransactionManager.beginTransaction( null );
+
+        try
+        {
+            for ( int i = 0; i < _listTables.size(  ); i++ )
+            {
+                insert( _listTables.get( i ), listIndexerActions, listIds.get( i ) );
+            }
+
+            TransactionManager.commitTransaction( null );
+        }
+        catch ( Exception e )
+        {
+            TransactionManager.rollBack( null );
+            throw new AppException( "Unable to insert the indexer action : " + e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Inserts actions in all the tables, in one transaction. The actions are coalesced
+     * with each other and with the pending ones if enabled, see
+     * {@link IndexerActionCoalescer#isEnabledOnInsert()}.
+     * @param collectionIndexerActions the actions
+     */
+    public void insert( Collection<IndexerAction> collectionIndexerActions )
+    {
+        if ( collectionIndexerActions.isEmpty(  ) )
+        {
+            return;
+        }
+
+        boolean bCoalesce = IndexerActionCoalescer.isEnabledOnInsert(  );
+        Collection<IndexerAction> collectionActions = collectionIndexerActions;
+
+        if ( bCoalesce )
+        {
+            // collapses the actions of the batch, on copies as their tasks can change
+            IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+
+            for ( IndexerAction indexerAction : collectionIndexerActions )
+            {
+                coalescer.add( copy( indexerAction ) );
+            }
+
+            IndexerActionCoalescer.addCoalescedOnInsert( coalescer.getSuperseded(  ).size(  ) );
+            collectionActions = coalescer.getActions(  );
+        }
+
+        // ids are reserved before the insert transaction, see IndexerActionIdAllocator
+        List<int[]> listIds = new ArrayList<int[]>( _listTables.size(  ) );
+
+        for ( IndexerActionTable table : _listTables )
+        {
+            listIds.add( table.getIdAllocator(  ).nextIds( collectionActions.size(  ) ) );
+        }
+
+        TransactionManager.beginTransaction( null );
+
+        try
+        {
+            for ( int i = 0; i < _listTables.size(  ); i++ )
+            {
+                IndexerActionTable table = _listTables.get( i );
+                insert( table, bCoalesce ? coalesceWithPending( table, collectionActions ) : collectionActions,
+                    listIds.get( i ) );
+            }
+
+            TransactionManager.commitTransaction( null );
+        }
+        catch ( Exception e )
+        {
+            TransactionManager.rollBack( null );
+            throw new AppException( "Unable to insert the indexer actions : " + e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Collapses the actions to insert with the pending actions of the table
+     * they supersede : the superseded actions are deleted and their tasks are
+     * merged in the new actions. Pending actions are only deleted, never
+     * updated, so that an action being processed is never changed.
+     * @param table the table
+     * @param collectionIndexerActions the actions to insert
+     * @return the actions to insert in the table
+     */
+    private Collection<IndexerAction> coalesceWithPending( IndexerActionTable table,
+        Collection<IndexerAction> collectionIndexerActions )
+    {
+        Set<String> setIdsDocuments = new LinkedHashSet<String>(  );
+
+        for ( IndexerAction indexerAction : collectionIndexerActions )
+        {
+            setIdsDocuments.add( indexerAction.getIdDocument(  ) );
+        }
+
+        Map<String, List<IndexerAction>> mapPending = selectByDocuments( table, setIdsDocuments );
+
+        if ( mapPending.isEmpty(  ) )
+        {
+            return collectionIndexerActions;
+        }
+
+        List<IndexerAction> listTableActions = new ArrayList<IndexerAction>( collectionIndexerActions.size(  ) );
+        Set<Integer> setIdsSuperseded = new LinkedHashSet<Integer>(  );
+
+        for ( IndexerAction indexerAction : collectionIndexerActions )
+        {
+            IndexerAction tableAction = copy( indexerAction );
+            List<IndexerAction> listPending = mapPending.get( IndexerActionCoalescer.getDocumentKey( tableAction ) );
+
+            if ( listPending != null )
+            {
+                for ( IndexerAction pending : listPending )
+                {
+                    if ( IndexerActionCoalescer.supersedes( tableAction, pending ) &&
+                            setIdsSuperseded.add( pending.getIdAction(  ) ) )
+                    {
+                        tableAction.setIdTask( IndexerActionCoalescer.merge( pending.getIdTask(  ),
+                                tableAction.getIdTask(  ) ) );
+                    }
+                }
+            }
+
+            listTableActions.add( tableAction );
+        }
+
+        delete( table, setIdsSuperseded );
+        IndexerActionCoalescer.addCoalescedOnInsert( setIdsSuperseded.size(  ) );
+
+        return listTableActions;
+    }
+
+    /**
+     * Selects the pending actions of documents
+     * @param table the table
+     * @param collectionIdsDocuments the document ids
+     * @return the actions ordered by id, by document key, see
+     *         {@link IndexerActionCoalescer#getDocumentKey(IndexerAction)}
+     */
+    private Map<String, List<IndexerAction>> selectByDocuments( IndexerActionTable table,
+        Collection<String> collectionIdsDocuments )
+    {
+        Map<String, List<IndexerAction>> mapActions = new HashMap<String, List<IndexerAction>>(  );
+        List<String> listIds = new ArrayList<String>( collectionIdsDocuments );
+
+        for ( int nStart = 0; nStart < listIds.size(  ); nStart += BATCH_SIZE )
+        {
+            List<String> listBatch = listIds.subList( nStart, Math.min( nStart + BATCH_SIZE, listIds.size(  ) ) );
+            StringBuilder sbQuery = new StringBuilder( table.getQuerySelectByDocuments(  ) );
+            appendParameters( sbQuery, listBatch.size(  ) );
+
+            DAOUtil daoUtil = new DAOUtil( sbQuery.append( SQL_CLOSE_IN ).append( SQL_ORDER_BY_ID ).toString(  ) );
+            int nIndex = 1;
+
+            for ( String strIdDocument : listBatch )
+            {
+                daoUtil.setString( nIndex++, strIdDocument );
+            }
+
+            daoUtil.executeQuery(  );
+
+            while ( daoUtil.next(  ) )
+            {
+                IndexerAction indexerAction = readAction( daoUtil );
+                String strDocumentKey = IndexerActionCoalescer.getDocumentKey( indexerAction );
+                List<IndexerAction> listActions = mapActions.get( strDocumentKey );
+
+                if ( listActions == null )
+                {
+                    listActions = new ArrayList<IndexerAction>( 1 );
+                    mapActions.put( strDocumentKey, listActions );
+                }
+
+                listActions.add( indexerAction );
+            }
+
+            daoUtil.free(  );
+        }
+
+        return mapActions;
+    }
+
+    /**
+     * Collapses the pending actions of the table which is read : redundant
+     * actions are deleted and the remaining ones get the task covering the
+     * actions they superseded, in one transaction. The actions are read with
+     * a single query ordered by id, without any LIMIT clause. Memory is
+     * bounded by the number of distinct document/portlet/indexer keys and of
+     * superseded actions.
+     * @return the number of actions eliminated
+     */
+    public int coalesce(  )
+    {
+        IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+        int nCoalesced = 0;
+
+        TransactionManager.beginTransaction( null );
+
+        try
+        {
+            // one read ordered by id, the superseded actions are deleted once it is over
+            DAOUtil daoUtil = new DAOUtil( _tableRead.getQuerySelectOrderedById(  ) );
+            daoUtil.executeQuery(  );
+
+            while ( daoUtil.next(  ) )
+            {
+                coalescer.add( readAction( daoUtil ) );
+            }
+
+            daoUtil.free(  );
+
+            List<Integer> listIdsSuperseded = new ArrayList<Integer>( coalescer.getSuperseded(  ).size(  ) );
+
+            for ( IndexerAction superseded : coalescer.getSuperseded(  ) )
+            {
+                listIdsSuperseded.add( superseded.getIdAction(  ) );
+            }
+
+            delete( _tableRead, listIdsSuperseded );
+            nCoalesced = listIdsSuperseded.size(  );
+
+            for ( IndexerAction indexerAction : coalescer.getActions(  ) )
+            {
+                if ( coalescer.isTaskChanged( indexerAction ) )
+                {
+                    daoUtil = new DAOUtil( _tableRead.getQueryUpdateTask(  ) );
+                    daoUtil.setInt( 1, indexerAction.getIdTask(  ) );
+                    daoUtil.setInt( 2, indexerAction.getIdAction(  ) );
+                    daoUtil.executeUpdate(  );
+                    daoUtil.free(  );
+                }
+            }
+
+            TransactionManager.commitTransaction( null );
+        }
+        catch ( Exception e )
+        {
+            TransactionManager.rollBack( null );
+            throw new AppException( "Unable to coalesce the indexer actions : " + e.getMessage(  ), e );
+        }
+
+        IndexerActionCoalescer.addCoalescedPending( nCoalesced );
+
+        return nCoalesced;
     }
 
     /**
-     * Inserts the indexeraction using the given query
-     * @param strInsertQuery the query
+     * Copies an action, without its id
      * @param indexerAction the action
-     * @param nPrimaryKey primary key
+     * @return the copy
      */
-    private void insert( String strInsertQuery, IndexerAction indexerAction, int nPrimaryKey )
+    private static IndexerAction copy( IndexerAction indexerAction )
     {
-        DAOUtil daoUtil = new DAOUtil( strInsertQuery );
-        daoUtil.setString( 2, indexerAction.getIdDocument(  ) );
-        daoUtil.setInt( 3, indexerAction.getIdTask(  ) );
-        daoUtil.setString( 4, indexerAction.getIndexerName(  ) );
-        daoUtil.setInt( 5, indexerAction.getIdPortlet(  ) );
-        indexerAction.setIdAction( indexerAction.getIdAction(  ) );
-        daoUtil.setInt( 1, nPrimaryKey );
+        IndexerAction copy = new IndexerAction(  );
+        copy.setIdDocument( indexerAction.getIdDocument(  ) );
+        copy.setIdTask( indexerAction.getIdTask(  ) );
+        copy.setIndexerName( indexerAction.getIndexerName(  ) );
+        copy.setIdPortlet( indexerAction.getIdPortlet(  ) );
 
-        daoUtil.executeUpdate(  );
+        return copy;
+    }
 
-        daoUtil.free(  );
+    /**
+     * Reads an action from the current row
+     * @param daoUtil the daoUtil
+     * @return the action
+     */
+    private static IndexerAction readAction( DAOUtil daoUtil )
+    {
+        IndexerAction indexerAction = new IndexerAction(  );
+        indexerAction.setIdAction( daoUtil.getInt( 1 ) );
+        indexerAction.setIdDocument( daoUtil.getString( 2 ) );
+        indexerAction.setIdTask( daoUtil.getInt( 3 ) );
+        indexerAction.setIndexerName( daoUtil.getString( 4 ) );
+        indexerAction.setIdPortlet( daoUtil.getInt( 5 ) );
+
+        return indexerAction;
     }
 
     /**
-     * Load query
-     * @return load query
+     * Appends the parameters of an IN clause
+     * @param sbQuery the query
+     * @param nCount the number of parameters
      */
-    private String getLoadQuery(  )
+    private static void appendParameters( StringBuilder sbQuery, int nCount )
     {
-        if ( LANG_ENGLISH.equals( _strLang ) )
+        for ( int i = 0; i < nCount; i++ )
         {
-            return SQL_QUERY_FIND_BY_PRIMARY_KEY_EN;
+            if ( i > 0 )
+            {
+                sbQuery.append( SQL_SEPARATOR );
+            }
+
+            sbQuery.append( SQL_PARAMETER );
         }
+    }
 
-        return SQL_QUERY_FIND_BY_PRIMARY_KEY_FR;
+    /**
+     * Inserts actions in one table, one row at a time with the same
+     * statement. Must be called inside a transaction.
+     * @param table the table
+     * @param collectionIndexerActions the actions
+     * @param nIds the ids of the actions, reserved in the table
+     */
+    private void insert( IndexerActionTable table, Collection<IndexerAction> collectionIndexerActions, int[] nIds )
+    {
+        DAOUtil daoUtil = new DAOUtil( table.getQueryInsert(  ) );
+        int nId = 0;
+
+        for ( IndexerAction indexerAction : collectionIndexerActions )
+        {
+            daoUtil.setInt( 1, nIds[nId++] );
+            daoUtil.setString( 2, indexerAction.getIdDocument(  ) );
+            daoUtil.setInt( 3, indexerAction.getIdTask(  ) );
+            daoUtil.setString( 4, indexerAction.getIndexerName(  ) );
+            daoUtil.setInt( 5, indexerAction.getIdPortlet(  ) );
+            daoUtil.executeUpdate(  );
+        }
+
+        daoUtil.free(  );
     }
 
     /**
@@ -177,7 +522,7 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
     {
         IndexerAction indexerAction = null;
 
-        DAOUtil daoUtil = new DAOUtil( getLoadQuery(  ) );
+        DAOUtil daoUtil = new DAOUtil( _tableRead.getQueryFindByPrimaryKey(  ) );
         daoUtil.setInt( 1, nId );
         daoUtil.executeQuery(  );
 
@@ -197,27 +542,64 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
     }
 
     /**
-     * Delete query
-     * @return delete query
+     *
+     *{@inheritDoc}
+     */
+    public void delete( int nId )
+    {
+        DAOUtil daoUtil = new DAOUtil( _tableRead.getQueryDelete(  ) );
+        daoUtil.setInt( 1, nId );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     * Deletes actions from a table, by batches of up to {@link #BATCH_SIZE}
+     * actions
+     * @param table the table
+     * @param collectionIds the ids of the actions
      */
-    private String getDeleteQuery(  )
+    private void delete( IndexerActionTable table, Collection<Integer> collectionIds )
     {
-        if ( LANG_ENGLISH.equals( _strLang ) )
+        List<Integer> listBatch = new ArrayList<Integer>( BATCH_SIZE );
+
+        for ( Integer nId : collectionIds )
         {
-            return SQL_QUERY_DELETE_EN;
+            listBatch.add( nId );
+
+            if ( listBatch.size(  ) == BATCH_SIZE )
+            {
+                deleteRows( table, listBatch );
+                listBatch.clear(  );
+            }
         }
 
-        return SQL_QUERY_DELETE_FR;
+        deleteRows( table, listBatch );
     }
 
     /**
-     *
-     *{@inheritDoc}
+     * Deletes actions with a single statement
+     * @param table the table
+     * @param listIds the ids of the actions, up to {@link #BATCH_SIZE}
      */
-    public void delete( int nId )
+    private void deleteRows( IndexerActionTable table, List<Integer> listIds )
     {
-        DAOUtil daoUtil = new DAOUtil( getDeleteQuery(  ) );
-        daoUtil.setInt( 1, nId );
+        if ( listIds.isEmpty(  ) )
+        {
+            return;
+        }
+
+        StringBuilder sbQuery = new StringBuilder( table.getQueryDeleteBatch(  ) );
+        appendParameters( sbQuery, listIds.size(  ) );
+
+        DAOUtil daoUtil = new DAOUtil( sbQuery.append( SQL_CLOSE_IN ).toString(  ) );
+        int nIndex = 1;
+
+        for ( Integer nId : listIds )
+        {
+            daoUtil.setInt( nIndex++, nId );
+        }
+
         daoUtil.executeUpdate(  );
         daoUtil.free(  );
     }
@@ -228,12 +610,7 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
      */
     public String getTruncateQuery(  )
     {
-        if ( LANG_ENGLISH.equals( _strLang ) )
-        {
-            return SQL_QUERY_TRUNCATE_EN;
-        }
-
-        return SQL_QUERY_TRUNCATE_FR;
+        return _tableRead.getQueryTruncate(  );
     }
 
     /**
@@ -258,21 +635,8 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
     }
 
     /**
-     * Select query
-     * @return select query
-     */
-    private String getQuerySelect(  )
-    {
-        if ( LANG_ENGLISH.equals( _strLang ) )
-        {
-            return SQL_QUERY_SELECT_EN;
-        }
-
-        return SQL_QUERY_SELECT_FR;
-    }
-
-    /**
-     *
+     * Reads all the matching actions at once : the core incremental indexing
+     * only reads the actions through this method.
      *{@inheritDoc}
      */
     public List<IndexerAction> selectList( IndexerActionFilter filter )
@@ -286,7 +650,7 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
             listStrFilter.add( SQL_FILTER_ID_TASK );
         }
 
-        String strSQL = buildRequestWithFilter( getQuerySelect(  ), listStrFilter, null );
+        String strSQL = buildRequestWithFilter( _tableRead.getQuerySelect(  ), listStrFilter, null );
 
         DAOUtil daoUtil = new DAOUtil( strSQL );
 
@@ -325,7 +689,7 @@ public class MultiRootIndexerActionDAO implements IIndexerActionDAO
         List<IndexerAction> indexerActionList = new ArrayList<IndexerAction>(  );
         IndexerAction indexerAction = null;
 
-        DAOUtil daoUtil = new DAOUtil( getQuerySelect(  ) );
+        DAOUtil daoUtil = new DAOUtil( _tableRead.getQuerySelect(  ) );
 
         daoUtil.executeQuery(  );
 
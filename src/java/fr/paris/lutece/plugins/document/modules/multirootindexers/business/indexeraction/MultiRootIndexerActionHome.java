@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.business.indexeraction.IndexerActionHome;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.util.Collection;
+
+
+/**
+ * Batch operations on the indexer actions. Uses the operations of
+ * {@link MultiRootIndexerActionDAO} when it is the configured indexer action
+ * DAO, otherwise the actions are handled one by one by
+ * {@link IndexerActionHome}.
+ */
+public final class MultiRootIndexerActionHome
+{
+    private static final String BEAN_INDEXER_ACTION_DAO = "indexerActionDAO";
+
+    /**
+     * Private constructor
+     */
+    private MultiRootIndexerActionHome(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Creates actions
+     * @param collectionIndexerActions the actions
+     */
+    public static void create( Collection<IndexerAction> collectionIndexerActions )
+    {
+        MultiRootIndexerActionDAO dao = getMultiRootDAO(  );
+
+        if ( dao != null )
+        {
+            dao.insert( collectionIndexerActions );
+        }
+        else
+        {
+            for ( IndexerAction indexerAction : collectionIndexerActions )
+            {
+                IndexerActionHome.create( indexerAction );
+            }
+        }
+    }
+
+    /**
+     * Collapses the redundant pending actions
+     * @return the number of actions eliminated, or -1 if the configured DAO
+     *         does not support it
+     */
+    public static int coalesce(  )
+    {
+        MultiRootIndexerActionDAO dao = getMultiRootDAO(  );
+
+        return ( dao != null ) ? dao.coalesce(  ) : ( -1 );
+    }
+
+    /**
+     * Gets the configured indexer action DAO if it supports batch operations
+     * @return the DAO, or null
+     */
+    private static MultiRootIndexerActionDAO getMultiRootDAO(  )
+    {
+        Object dao = SpringContextService.getBean( BEAN_INDEXER_ACTION_DAO );
+
+        return ( dao instanceof MultiRootIndexerActionDAO ) ? (MultiRootIndexerActionDAO) dao : null;
+    }
+}
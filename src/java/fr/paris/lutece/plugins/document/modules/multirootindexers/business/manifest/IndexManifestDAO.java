@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Index manifest DAO, in the default pool like the indexer actions.
+ */
+public class IndexManifestDAO implements IIndexManifestDAO
+{
+    private static final String SQL_QUERY_INSERT = "INSERT INTO document_multirootindexers_manifest" +
+        " ( document_portlet_id, id_document, id_portlet, date_modification, content_hash, role ) VALUES ( ?, ?, ?, ?, ?, ? )";
+    private static final String SQL_QUERY_UPDATE = "UPDATE document_multirootindexers_manifest" +
+        " SET id_document = ?, id_portlet = ?, date_modification = ?, content_hash = ?, role = ? WHERE document_portlet_id = ?";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM document_multirootindexers_manifest WHERE document_portlet_id = ?";
+    private static final String SQL_QUERY_DELETE_ALL = "DELETE FROM document_multirootindexers_manifest";
+    private static final String SQL_QUERY_SELECT_ALL = "SELECT document_portlet_id, id_document, id_portlet, date_modification," +
+        " content_hash, role FROM document_multirootindexers_manifest";
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void insert( Collection<IndexManifestEntry> collectionEntries )
+    {
+        for ( IndexManifestEntry entry : collectionEntries )
+        {
+            DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT );
+            daoUtil.setString( 1, entry.getDocumentPortletId(  ) );
+            daoUtil.setInt( 2, entry.getIdDocument(  ) );
+            daoUtil.setInt( 3, entry.getIdPortlet(  ) );
+            daoUtil.setTimestamp( 4, entry.getDateModification(  ) );
+            daoUtil.setString( 5, entry.getContentHash(  ) );
+            daoUtil.setString( 6, entry.getRole(  ) );
+            daoUtil.executeUpdate(  );
+            daoUtil.free(  );
+        }
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void store( IndexManifestEntry entry )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE );
+        daoUtil.setInt( 1, entry.getIdDocument(  ) );
+        daoUtil.setInt( 2, entry.getIdPortlet(  ) );
+        daoUtil.setTimestamp( 3, entry.getDateModification(  ) );
+        daoUtil.setString( 4, entry.getContentHash(  ) );
+        daoUtil.setString( 5, entry.getRole(  ) );
+        daoUtil.setString( 6, entry.getDocumentPortletId(  ) );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void delete( String strDocumentPortletId )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE );
+        daoUtil.setString( 1, strDocumentPortletId );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void deleteAll(  )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_ALL );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, IndexManifestEntry> selectAll(  )
+    {
+        Map<String, IndexManifestEntry> mapEntries = new HashMap<String, IndexManifestEntry>(  );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ALL );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            IndexManifestEntry entry = new IndexManifestEntry(  );
+            entry.setDocumentPortletId( daoUtil.getString( 1 ) );
+            entry.setIdDocument( daoUtil.getInt( 2 ) );
+            entry.setIdPortlet( daoUtil.getInt( 3 ) );
+            entry.setDateModification( daoUtil.getTimestamp( 4 ) );
+            entry.setContentHash( daoUtil.getString( 5 ) );
+            entry.setRole( daoUtil.getString( 6 ) );
+            mapEntries.put( entry.getDocumentPortletId(  ), entry );
+        }
+
+        daoUtil.free(  );
+
+        return mapEntries;
+    }
+}
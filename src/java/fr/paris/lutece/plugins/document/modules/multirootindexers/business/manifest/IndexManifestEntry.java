@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest;
+
+import java.sql.Timestamp;
+
+
+/**
+ * Entry of the index manifest : what was last indexed for a document
+ * published in a portlet.
+ */
+public class IndexManifestEntry
+{
+    private String _strDocumentPortletId;
+    private int _nIdDocument;
+    private int _nIdPortlet;
+    private Timestamp _dateModification;
+    private String _strContentHash;
+    private String _strRole;
+
+    /**
+     * Gets the document id concatened to the portlet id, as indexed in the
+     * document_portlet_id field
+     * @return the document portlet id
+     */
+    public String getDocumentPortletId(  )
+    {
+        return _strDocumentPortletId;
+    }
+
+    /**
+     * Sets the document portlet id
+     * @param strDocumentPortletId the document portlet id
+     */
+    public void setDocumentPortletId( String strDocumentPortletId )
+    {
+        _strDocumentPortletId = strDocumentPortletId;
+    }
+
+    /**
+     * Gets the document id
+     * @return the document id
+     */
+    public int getIdDocument(  )
+    {
+        return _nIdDocument;
+    }
+
+    /**
+     * Sets the document id
+     * @param nIdDocument the document id
+     */
+    public void setIdDocument( int nIdDocument )
+    {
+        _nIdDocument = nIdDocument;
+    }
+
+    /**
+     * Gets the portlet id
+     * @return the portlet id
+     */
+    public int getIdPortlet(  )
+    {
+        return _nIdPortlet;
+    }
+
+    /**
+     * Sets the portlet id
+     * @param nIdPortlet the portlet id
+     */
+    public void setIdPortlet( int nIdPortlet )
+    {
+        _nIdPortlet = nIdPortlet;
+    }
+
+    /**
+     * Gets the modification date of the indexed document
+     * @return the modification date
+     */
+    public Timestamp getDateModification(  )
+    {
+        return _dateModification;
+    }
+
+    /**
+     * Sets the modification date of the indexed document
+     * @param dateModification the modification date
+     */
+    public void setDateModification( Timestamp dateModification )
+    {
+        _dateModification = dateModification;
+    }
+
+    /**
+     * Gets the hash of the indexed content
+     * @return the hash, or null if unknown
+     */
+    public String getContentHash(  )
+    {
+        return _strContentHash;
+    }
+
+    /**
+     * Sets the hash of the indexed content
+     * @param strContentHash the hash
+     */
+    public void setContentHash( String strContentHash )
+    {
+        _strContentHash = strContentHash;
+    }
+
+    /**
+     * Gets the role of the page of the portlet
+     * @return the role
+     */
+    public String getRole(  )
+    {
+        return _strRole;
+    }
+
+    /**
+     * Sets the role of the page of the portlet
+     * @param strRole the role
+     */
+    public void setRole( String strRole )
+    {
+        _strRole = strRole;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+/**
+ * Gives access to the index manifest : the document/portlet pairs in the index,
+ * with the inputs they were indexed from.
+ */
+public final class IndexManifestHome
+{
+    private static IIndexManifestDAO _dao = (IIndexManifestDAO) SpringContextService.getBean( 
+            "document-multirootindexers.indexManifestDAO" );
+
+    /**
+     * Private constructor
+     */
+    private IndexManifestHome(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Creates entries
+     * @param collectionEntries the entries
+     */
+    public static void create( Collection<IndexManifestEntry> collectionEntries )
+    {
+        _dao.insert( collectionEntries );
+    }
+
+    /**
+     * Updates an entry
+     * @param entry the entry
+     */
+    public static void update( IndexManifestEntry entry )
+    {
+        _dao.store( entry );
+    }
+
+    /**
+     * Removes an entry
+     * @param strDocumentPortletId the document portlet id of the entry
+     */
+    public static void remove( String strDocumentPortletId )
+    {
+        _dao.delete( strDocumentPortletId );
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public static void removeAll(  )
+    {
+        _dao.deleteAll(  );
+    }
+
+    /**
+     * Finds all the entries
+     * @return the entries by document portlet id
+     */
+    public static Map<String, IndexManifestEntry> findAll(  )
+    {
+        return _dao.selectAll(  );
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.page;
+
+import java.util.Map;
+
+
+/**
+ * Page fingerprints DAO.
+ */
+public interface IPageFingerprintDAO
+{
+    /**
+     * Inserts fingerprints
+     * @param mapFingerprints the fingerprints by page id
+     */
+    void insert( Map<Integer, String> mapFingerprints );
+
+    /**
+     * Deletes the fingerprint of a page
+     * @param nIdPage the page id
+     */
+    void delete( int nIdPage );
+
+    /**
+     * Deletes all the fingerprints
+     */
+    void deleteAll(  );
+
+    /**
+     * Loads all the fingerprints
+     * @return the fingerprints by page id
+     */
+    Map<Integer, String> selectAll(  );
+
+    /**
+     * Loads the update dates of the pages and of their portlets, with two
+     * queries
+     * @return the update dates of each page and of its portlets, as a string,
+     *         by page id
+     */
+    Map<Integer, String> selectUpdateStamps(  );
+
+    /**
+     * Loads the update dates of a page and of its portlets
+     * @param nIdPage the page id
+     * @return the update dates of the page and of its portlets, as a string,
+     *         or null if the page does not exist
+     */
+    String selectUpdateStamp( int nIdPage );
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.page;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Timestamp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Page fingerprints DAO, in the default pool like the indexer actions.
+ */
+public class PageFingerprintDAO implements IPageFingerprintDAO
+{
+    private static final String SQL_QUERY_INSERT = "INSERT INTO document_multirootindexers_page_fingerprint" +
+        " ( id_page, fingerprint ) VALUES ( ?, ? )";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM document_multirootindexers_page_fingerprint WHERE id_page = ?";
+    private static final String SQL_QUERY_DELETE_ALL = "DELETE FROM document_multirootindexers_page_fingerprint";
+    private static final String SQL_QUERY_SELECT_ALL = "SELECT id_page, fingerprint FROM document_multirootindexers_page_fingerprint";
+    private static final String SQL_QUERY_SELECT_PAGE_DATES = "SELECT id_page, date_update FROM core_page";
+    private static final String SQL_QUERY_SELECT_PORTLET_DATES = "SELECT id_page, id_portlet, date_update FROM core_portlet ORDER BY id_page, id_portlet";
+    private static final String SQL_QUERY_SELECT_PAGE_DATE = "SELECT date_update FROM core_page WHERE id_page = ?";
+    private static final String SQL_QUERY_SELECT_PAGE_PORTLET_DATES = "SELECT id_portlet, date_update FROM core_portlet WHERE id_page = ? ORDER BY id_portlet";
+    private static final String SEPARATOR_PORTLET = ";";
+    private static final String SEPARATOR_DATE = ":";
+    private static final String NO_DATE = "-";
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void insert( Map<Integer, String> mapFingerprints )
+    {
+        for ( Map.Entry<Integer, String> entry : mapFingerprints.entrySet(  ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT );
+            daoUtil.setInt( 1, entry.getKey(  ) );
+            daoUtil.setString( 2, entry.getValue(  ) );
+            daoUtil.executeUpdate(  );
+            daoUtil.free(  );
+        }
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void delete( int nIdPage )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE );
+        daoUtil.setInt( 1, nIdPage );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void deleteAll(  )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_ALL );
+        daoUtil.executeUpdate(  );
+        daoUtil.free(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, String> selectAll(  )
+    {
+        Map<Integer, String> mapFingerprints = new HashMap<Integer, String>(  );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ALL );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            mapFingerprints.put( daoUtil.getInt( 1 ), daoUtil.getString( 2 ) );
+        }
+
+        daoUtil.free(  );
+
+        return mapFingerprints;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<Integer, String> selectUpdateStamps(  )
+    {
+        Map<Integer, StringBuilder> mapStamps = new HashMap<Integer, StringBuilder>(  );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PAGE_DATES );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            StringBuilder sbStamp = new StringBuilder(  );
+            appendDate( sbStamp, daoUtil.getTimestamp( 2 ) );
+            mapStamps.put( daoUtil.getInt( 1 ), sbStamp );
+        }
+
+        daoUtil.free(  );
+
+        daoUtil = new DAOUtil( SQL_QUERY_SELECT_PORTLET_DATES );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            StringBuilder sbStamp = mapStamps.get( daoUtil.getInt( 1 ) );
+
+            if ( sbStamp != null )
+            {
+                appendPortlet( sbStamp, daoUtil.getInt( 2 ), daoUtil.getTimestamp( 3 ) );
+            }
+        }
+
+        daoUtil.free(  );
+
+        Map<Integer, String> mapResult = new HashMap<Integer, String>( mapStamps.size(  ) * 2 );
+
+        for ( Map.Entry<Integer, StringBuilder> entry : mapStamps.entrySet(  ) )
+        {
+            mapResult.put( entry.getKey(  ), entry.getValue(  ).toString(  ) );
+        }
+
+        return mapResult;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public String selectUpdateStamp( int nIdPage )
+    {
+        StringBuilder sbStamp = null;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PAGE_DATE );
+        daoUtil.setInt( 1, nIdPage );
+        daoUtil.executeQuery(  );
+
+        if ( daoUtil.next(  ) )
+        {
+            sbStamp = new StringBuilder(  );
+            appendDate( sbStamp, daoUtil.getTimestamp( 1 ) );
+        }
+
+        daoUtil.free(  );
+
+        if ( sbStamp == null )
+        {
+            return null;
+        }
+
+        daoUtil = new DAOUtil( SQL_QUERY_SELECT_PAGE_PORTLET_DATES );
+        daoUtil.setInt( 1, nIdPage );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            appendPortlet( sbStamp, daoUtil.getInt( 1 ), daoUtil.getTimestamp( 2 ) );
+        }
+
+        daoUtil.free(  );
+
+        return sbStamp.toString(  );
+    }
+
+    /**
+     * Appends a portlet and its update date to a stamp
+     * @param sbStamp the stamp
+     * @param nIdPortlet the portlet id
+     * @param date the date, may be null
+     */
+    private static void appendPortlet( StringBuilder sbStamp, int nIdPortlet, Timestamp date )
+    {
+        sbStamp.append( SEPARATOR_PORTLET ).append( nIdPortlet ).append( SEPARATOR_DATE );
+        appendDate( sbStamp, date );
+    }
+
+    /**
+     * Appends a date to a stamp
+     * @param sbStamp the stamp
+     * @param date the date, may be null
+     */
+    private static void appendDate( StringBuilder sbStamp, Timestamp date )
+    {
+        if ( date == null )
+        {
+            sbStamp.append( NO_DATE );
+        }
+        else
+        {
+            sbStamp.append( date.getTime(  ) );
+        }
+    }
+}
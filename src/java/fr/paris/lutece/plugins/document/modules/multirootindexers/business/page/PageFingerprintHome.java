@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.page;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.util.Map;
+
+
+/**
+ * Gives access to the page fingerprints : the pages in the index, with a
+ * fingerprint of the update dates they were indexed from.
+ */
+public final class PageFingerprintHome
+{
+    private static IPageFingerprintDAO _dao = (IPageFingerprintDAO) SpringContextService.getBean( 
+            "document-multirootindexers.pageFingerprintDAO" );
+
+    /**
+     * Private constructor
+     */
+    private PageFingerprintHome(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Creates fingerprints
+     * @param mapFingerprints the fingerprints by page id
+     */
+    public static void create( Map<Integer, String> mapFingerprints )
+    {
+        _dao.insert( mapFingerprints );
+    }
+
+    /**
+     * Removes the fingerprint of a page
+     * @param nIdPage the page id
+     */
+    public static void remove( int nIdPage )
+    {
+        _dao.delete( nIdPage );
+    }
+
+    /**
+     * Removes all the fingerprints
+     */
+    public static void removeAll(  )
+    {
+        _dao.deleteAll(  );
+    }
+
+    /**
+     * Finds all the fingerprints
+     * @return the fingerprints by page id
+     */
+    public static Map<Integer, String> findAll(  )
+    {
+        return _dao.selectAll(  );
+    }
+
+    /**
+     * Finds the update dates of the pages and of their portlets, with two
+     * queries
+     * @return the update dates of each page and of its portlets, as a string,
+     *         by page id
+     */
+    public static Map<Integer, String> findUpdateStamps(  )
+    {
+        return _dao.selectUpdateStamps(  );
+    }
+
+    /**
+     * Finds the update dates of a page and of its portlets
+     * @param nIdPage the page id
+     * @return the update dates of the page and of its portlets, as a string,
+     *         or null if the page does not exist
+     */
+    public static String findUpdateStamp( int nIdPage )
+    {
+        return _dao.selectUpdateStamp( nIdPage );
+    }
+}
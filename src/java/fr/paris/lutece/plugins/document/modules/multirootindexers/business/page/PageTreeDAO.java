@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.page;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.Arrays;
+
+
+/**
+ * Reads the (id_page, id_parent) pairs of core_page.
+ */
+public class PageTreeDAO implements IPageTreeDAO
+{
+    private static final String SQL_QUERY_SELECT_TREE = "SELECT id_page, id_parent FROM core_page ORDER BY id_parent, page_order, id_page";
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public PageTreeSnapshot loadSnapshot(  )
+    {
+        int[] nIdsPages = new int[INITIAL_CAPACITY];
+        int[] nIdsParents = new int[INITIAL_CAPACITY];
+        int nCount = 0;
+
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_TREE );
+        daoUtil.executeQuery(  );
+
+        while ( daoUtil.next(  ) )
+        {
+            if ( nCount == nIdsPages.length )
+            {
+                nIdsPages = Arrays.copyOf( nIdsPages, nCount * 2 );
+                nIdsParents = Arrays.copyOf( nIdsParents, nCount * 2 );
+            }
+
+            nIdsPages[nCount] = daoUtil.getInt( 1 );
+            nIdsParents[nCount] = daoUtil.getInt( 2 );
+            nCount++;
+        }
+
+        daoUtil.free(  );
+
+        return new PageTreeSnapshot( nIdsPages, nIdsParents, nCount );
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.page;
+
+import java.util.Arrays;
+
+
+/**
+ * Immutable snapshot of the page tree, built from the (id_page, id_parent)
+ * pairs of all the pages. The children of each page are stored in one int
+ * array, indexed by offsets, in the order of the pairs (ie: page order).
+ */
+public final class PageTreeSnapshot
+{
+    private static final int[] EMPTY = new int[0];
+
+    /** Sorted page ids */
+    private final int[] _nIds;
+
+    /** Parent id of each page, same index as {@link #_nIds} */
+    private final int[] _nParents;
+
+    /** Children of page i are the indexes _nChildren[ _nChildOffsets[i] ] to _nChildren[ _nChildOffsets[i+1] - 1 ] */
+    private final int[] _nChildOffsets;
+    private final int[] _nChildren;
+
+    /**
+     * Builds the snapshot
+     * @param nIdsPages the page ids
+     * @param nIdsParents the parent id of each page
+     * @param nCount the number of pages to read from the arrays
+     */
+    public PageTreeSnapshot( int[] nIdsPages, int[] nIdsParents, int nCount )
+    {
+        _nIds = Arrays.copyOf( nIdsPages, nCount );
+        Arrays.sort( _nIds );
+        _nParents = new int[nCount];
+        _nChildOffsets = new int[nCount + 1];
+        _nChildren = new int[nCount];
+
+        int[] nParentIndexes = new int[nCount];
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            int nIndex = Arrays.binarySearch( _nIds, nIdsPages[i] );
+            _nParents[nIndex] = nIdsParents[i];
+
+            int nParentIndex = indexOf( nIdsParents[i] );
+            nParentIndexes[i] = nParentIndex;
+
+            if ( nParentIndex >= 0 )
+            {
+                _nChildOffsets[nParentIndex + 1]++;
+            }
+        }
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            _nChildOffsets[i + 1] += _nChildOffsets[i];
+        }
+
+        int[] nFill = Arrays.copyOf( _nChildOffsets, nCount );
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            if ( nParentIndexes[i] >= 0 )
+            {
+                _nChildren[nFill[nParentIndexes[i]]++] = Arrays.binarySearch( _nIds, nIdsPages[i] );
+            }
+        }
+    }
+
+    /**
+     * Gets the number of pages
+     * @return the number of pages
+     */
+    public int size(  )
+    {
+        return _nIds.length;
+    }
+
+    /**
+     * Gets the ids of all the pages
+     * @return the sorted page ids
+     */
+    public int[] getIds(  )
+    {
+        return _nIds.clone(  );
+    }
+
+    /**
+     * Tells whether the page exists in the snapshot
+     * @param nIdPage the page id
+     * @return true if the page exists
+     */
+    public boolean contains( int nIdPage )
+    {
+        return indexOf( nIdPage ) >= 0;
+    }
+
+    /**
+     * Gets the parent of a page
+     * @param nIdPage the page id
+     * @return the parent page id, or -1 if the page does not exist
+     */
+    public int getParentId( int nIdPage )
+    {
+        int nIndex = indexOf( nIdPage );
+
+        return ( nIndex >= 0 ) ? _nParents[nIndex] : ( -1 );
+    }
+
+    /**
+     * Gets the children of a page, in page order
+     * @param nIdPage the page id
+     * @return the children ids
+     */
+    public int[] getChildIds( int nIdPage )
+    {
+        int nIndex = indexOf( nIdPage );
+
+        if ( nIndex < 0 )
+        {
+            return EMPTY;
+        }
+
+        int[] nChildIds = new int[_nChildOffsets[nIndex + 1] - _nChildOffsets[nIndex]];
+
+        for ( int i = 0; i < nChildIds.length; i++ )
+        {
+            nChildIds[i] = _nIds[_nChildren[_nChildOffsets[nIndex] + i]];
+        }
+
+        return nChildIds;
+    }
+
+    /**
+     * Gets the number of children of a page
+     * @param nIdPage the page id
+     * @return the number of children, 0 if the page does not exist
+     */
+    public int getChildCount( int nIdPage )
+    {
+        int nIndex = indexOf( nIdPage );
+
+        return ( nIndex >= 0 ) ? ( _nChildOffsets[nIndex + 1] - _nChildOffsets[nIndex] ) : 0;
+    }
+
+    /**
+     * Gets the ids of the descendants of a page (the page excluded). The
+     * children of a page come first, then the descendants of each child.
+     * @param nIdPage the page id
+     * @return the descendant ids
+     */
+    public int[] getDescendantIds( int nIdPage )
+    {
+        int nIndex = indexOf( nIdPage );
+
+        if ( nIndex < 0 )
+        {
+            return EMPTY;
+        }
+
+        // indexes of the pages in result order, the ids are resolved at the end
+        int[] nResult = new int[_nIds.length];
+        boolean[] bVisited = new boolean[_nIds.length];
+        bVisited[nIndex] = true;
+
+        // explicit stack of the ranges of children still to expand, the tree
+        // can be as deep as it has pages : each range is the children of a
+        // page, expanded before the next sibling of that page
+        int[] nStackNext = new int[_nIds.length + 1];
+        int[] nStackEnd = new int[_nIds.length + 1];
+        int nDepth = 0;
+        int nCount = addChildren( nIndex, nResult, 0, bVisited );
+        nStackNext[0] = 0;
+        nStackEnd[0] = nCount;
+
+        while ( nDepth >= 0 )
+        {
+            if ( nStackNext[nDepth] == nStackEnd[nDepth] )
+            {
+                nDepth--;
+
+                continue;
+            }
+
+            int nChild = nResult[nStackNext[nDepth]++];
+            int nStart = nCount;
+            nCount = addChildren( nChild, nResult, nCount, bVisited );
+
+            if ( nCount > nStart )
+            {
+                nDepth++;
+                nStackNext[nDepth] = nStart;
+                nStackEnd[nDepth] = nCount;
+            }
+        }
+
+        int[] nDescendantIds = new int[nCount];
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            nDescendantIds[i] = _nIds[nResult[i]];
+        }
+
+        return nDescendantIds;
+    }
+
+    /**
+     * Adds the children of a page not visited yet
+     * @param nIndex the index of the page
+     * @param nResult the indexes of the pages of the result
+     * @param nCount the number of pages already in the result
+     * @param bVisited the visited pages, protects against cycles
+     * @return the new number of pages in the result
+     */
+    private int addChildren( int nIndex, int[] nResult, int nCount, boolean[] bVisited )
+    {
+        int nNewCount = nCount;
+
+        for ( int i = _nChildOffsets[nIndex]; i < _nChildOffsets[nIndex + 1]; i++ )
+        {
+            int nChild = _nChildren[i];
+
+            if ( !bVisited[nChild] )
+            {
+                bVisited[nChild] = true;
+                nResult[nNewCount++] = nChild;
+            }
+        }
+
+        return nNewCount;
+    }
+
+    /**
+     * Gets the index of a page
+     * @param nIdPage the page id
+     * @return the index, negative if the page does not exist
+     */
+    private int indexOf( int nIdPage )
+    {
+        return Arrays.binarySearch( _nIds, nIdPage );
+    }
+}
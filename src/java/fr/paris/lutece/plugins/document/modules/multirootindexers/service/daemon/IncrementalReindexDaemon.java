@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.daemon;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers.IndexManifestService;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers.PageFingerprintService;
+import fr.paris.lutece.portal.service.daemon.Daemon;
+
+
+/**
+ * Queues the reindexing of the published documents and of the pages which
+ * changed since the last indexing, see {@link IndexManifestService#reindexChanged()}
+ * and {@link PageFingerprintService#reindexChanged()}.
+ */
+public class IncrementalReindexDaemon extends Daemon
+{
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void run(  )
+    {
+        StringBuilder sbLogs = new StringBuilder(  );
+
+        if ( IndexManifestService.isEnabled(  ) )
+        {
+            sbLogs.append( IndexManifestService.reindexChanged(  ) );
+        }
+        else
+        {
+            sbLogs.append( "Index manifest disabled" );
+        }
+
+        sbLogs.append( "\n" );
+
+        if ( PageFingerprintService.isEnabled(  ) )
+        {
+            sbLogs.append( PageFingerprintService.reindexChanged(  ) );
+        }
+        else
+        {
+            sbLogs.append( "Page fingerprints disabled" );
+        }
+
+        setLastRunLogs( sbLogs.toString(  ) );
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.business.attributes.DocumentAttribute;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+/**
+ * Tells, for each attribute of a document type, whether it is indexed and
+ * which one is the title. The plan is positional : the attributes of the
+ * documents of a type are always loaded in the same order (attribute order).
+ * Whether an indexed attribute goes through a file indexer depends on its
+ * value ({@link DocumentAttribute#isBinary()}), not on the plan.
+ */
+public final class AttributeIndexingPlan
+{
+    private final int[] _nIds;
+    private final String[] _strCodes;
+    private final boolean[] _bSearchable;
+    private final boolean[] _bIndexed;
+    private final int _nTitleIndex;
+
+    /**
+     * Builds the plan from the attributes of a document
+     * @param listAttributes the attributes
+     * @param patternNotIndexed the codes of the attributes never indexed, may
+     *            be null
+     * @param patternTitle the code of the attribute used as title, may be null
+     */
+    AttributeIndexingPlan( List<DocumentAttribute> listAttributes, Pattern patternNotIndexed, Pattern patternTitle )
+    {
+        int nSize = listAttributes.size(  );
+        _nIds = new int[nSize];
+        _strCodes = new String[nSize];
+        _bSearchable = new boolean[nSize];
+        _bIndexed = new boolean[nSize];
+
+        int nTitleIndex = -1;
+
+        for ( int i = 0; i < nSize; i++ )
+        {
+            DocumentAttribute attribute = listAttributes.get( i );
+            _nIds[i] = attribute.getId(  );
+            _strCodes[i] = attribute.getCode(  );
+            _bSearchable[i] = attribute.isSearchable(  );
+
+            _bIndexed[i] = attribute.isSearchable(  ) &&
+                ( ( patternNotIndexed == null ) || !patternNotIndexed.matcher( attribute.getCode(  ) ).matches(  ) );
+
+            // the last matching attribute is the title
+            if ( ( patternTitle != null ) && patternTitle.matcher( attribute.getCode(  ) ).matches(  ) )
+            {
+                nTitleIndex = i;
+            }
+        }
+
+        _nTitleIndex = nTitleIndex;
+    }
+
+    /**
+     * Tells whether the plan applies to these attributes, ie: the document
+     * type has not changed since the plan was built
+     * @param listAttributes the attributes of a document
+     * @return true if the plan applies
+     */
+    boolean appliesTo( List<DocumentAttribute> listAttributes )
+    {
+        if ( listAttributes.size(  ) != _nIds.length )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < _nIds.length; i++ )
+        {
+            DocumentAttribute attribute = listAttributes.get( i );
+
+            if ( ( attribute.getId(  ) != _nIds[i] ) || ( attribute.isSearchable(  ) != _bSearchable[i] ) ||
+                    !_strCodes[i].equals( attribute.getCode(  ) ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Tells whether an attribute is indexed : searchable and not excluded by
+     * its code
+     * @param nIndex the position of the attribute
+     * @return true if the attribute is indexed
+     */
+    public boolean isIndexed( int nIndex )
+    {
+        return _bIndexed[nIndex];
+    }
+
+    /**
+     * Gets the position of the attribute used as title
+     * @return the position, or -1 if the document title is used
+     */
+    public int getTitleIndex(  )
+    {
+        return _nTitleIndex;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.business.attributes.DocumentAttribute;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Keeps the {@link AttributeIndexingPlan} of each document type. A plan is
+ * rebuilt when the attributes of its document type change. All the plans are
+ * dropped when the {@link IndexerConfig} changes, and by {@link #reset()} at
+ * the beginning of each full indexing.
+ */
+public final class AttributeIndexingPlanService
+{
+    private static final AttributeIndexingPlanService _singleton = new AttributeIndexingPlanService(  );
+    private final Map<String, AttributeIndexingPlan> _mapPlans = new ConcurrentHashMap<String, AttributeIndexingPlan>(  );
+    private volatile IndexerConfig _config = IndexerConfig.getInstance(  );
+
+    /**
+     * Private constructor
+     */
+    private AttributeIndexingPlanService(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Returns the unique instance
+     * @return the instance
+     */
+    public static AttributeIndexingPlanService getInstance(  )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Gets the plan of the type of a document
+     * @param document the document
+     * @return the plan
+     */
+    public AttributeIndexingPlan getPlan( Document document )
+    {
+        IndexerConfig config = IndexerConfig.getInstance(  );
+
+        if ( config != _config )
+        {
+            _config = config;
+            _mapPlans.clear(  );
+        }
+
+        List<DocumentAttribute> listAttributes = document.getAttributes(  );
+        AttributeIndexingPlan plan = _mapPlans.get( document.getCodeDocumentType(  ) );
+
+        if ( ( plan == null ) || !plan.appliesTo( listAttributes ) )
+        {
+            plan = new AttributeIndexingPlan( listAttributes, config.getNotIndexedPattern(  ),
+                    config.getTitlePattern(  ) );
+            _mapPlans.put( document.getCodeDocumentType(  ), plan );
+        }
+
+        return plan;
+    }
+
+    /**
+     * Drops all the plans
+     */
+    public void reset(  )
+    {
+        _mapPlans.clear(  );
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingMetrics;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.util.IndexingThreadFactory;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import org.apache.lucene.document.Document;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Writes the documents to another target by batches, on a writer thread of
+ * its own. The documents are queued in a bounded queue and written once the
+ * batch is full or once its oldest document has waited for the flush
+ * interval.
+ * <br>
+ * The producer is held back when the writer falls behind : it waits when the
+ * queue is full, and when the heap still used after the last garbage
+ * collection rises above the configured watermark it waits once until every
+ * queued document has been written. The stages feeding the
+ * producer are then held back by their own bounded queues. The time spent
+ * waiting is recorded as the {@link IndexingMetrics#STAGE_WRITE_WAIT} stage.
+ * <br>
+ * The documents are written in the order they are queued. With a batch size
+ * of 1 the documents are written on the calling thread, as without this
+ * target. {@link #close()} must be called once all the documents are queued,
+ * {@link #abort()} otherwise.
+ */
+final class BatchingIndexTarget implements IndexTarget
+{
+    private static final String PROPERTY_BATCH_SIZE = "document-multirootindexers.writer.batch.size";
+    private static final String PROPERTY_FLUSH_INTERVAL = "document-multirootindexers.writer.flush.interval";
+    private static final String PROPERTY_QUEUE_SIZE = "document-multirootindexers.writer.queue.size";
+    private static final String PROPERTY_HEAP_WATERMARK = "document-multirootindexers.writer.heap.watermark";
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_HEAP_WATERMARK = 0;
+    private static final long OFFER_TIMEOUT = 100L;
+    private static final int PERCENT = 100;
+
+    /** Asks the writer to write the pending batch */
+    private static final Document FLUSH = new Document( );
+
+    /** Asks the writer to write the pending batch and stop */
+    private static final Document END = new Document( );
+
+    /** Heap pools whose usage after a collection is watched : the old generation */
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = getHeapPools( );
+    private final IndexTarget _target;
+    private final int _nBatchSize;
+    private final long _lFlushIntervalNanos;
+    private final int _nHeapWatermark;
+    private final BlockingQueue<Document> _queue;
+    private final ExecutorService _executor;
+    private long _lQueued;
+    private long _lWritten;
+    private boolean _bWriterDone;
+    private volatile Throwable _error;
+    private boolean _bClosed;
+    private boolean _bAboveHeapWatermark;
+
+    /**
+     * Constructor, starts the writer if the documents are batched
+     * @param target the target the batches are written to
+     */
+    BatchingIndexTarget( IndexTarget target )
+    {
+        _target = target;
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        _lFlushIntervalNanos = TimeUnit.MILLISECONDS.toNanos( Math.max( 1,
+                    AppPropertiesService.getPropertyInt( PROPERTY_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL ) ) );
+        _nHeapWatermark = AppPropertiesService.getPropertyInt( PROPERTY_HEAP_WATERMARK, DEFAULT_HEAP_WATERMARK );
+
+        if ( _nBatchSize > 1 )
+        {
+            int nQueueSize = Math.max( _nBatchSize,
+                    AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE ) );
+            _queue = new ArrayBlockingQueue<Document>( nQueueSize );
+            _executor = Executors.newSingleThreadExecutor( new IndexingThreadFactory( "writer" ) );
+            _executor.execute( new Runnable( )
+            {
+                public void run( )
+                {
+                    writeBatches( );
+                }
+            } );
+        }
+        else
+        {
+            _queue = null;
+            _executor = null;
+        }
+    }
+
+    /**
+     * Queues a document, waits if the writer is behind
+     * @param doc the lucene document
+     * @throws IOException if the writer failed
+     */
+    public void write( Document doc ) throws IOException
+    {
+        if ( _queue == null )
+        {
+            _target.write( doc );
+
+            return;
+        }
+
+        checkError( );
+
+        try
+        {
+            if ( isCrossingHeapWatermark( ) )
+            {
+                long lStart = System.nanoTime( );
+                flush( );
+                IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_WRITE_WAIT, lStart );
+            }
+
+            synchronized ( this )
+            {
+                _lQueued++;
+            }
+
+            if ( !_queue.offer( doc ) )
+            {
+                long lStart = System.nanoTime( );
+                enqueue( doc );
+                IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_WRITE_WAIT, lStart );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IOException( "Interrupted while waiting for the index writer", e );
+        }
+    }
+
+    /**
+     * Queues the documents one by one, see {@link #write(Document)}
+     * @param listDocs the lucene documents
+     * @throws IOException if the writer failed
+     */
+    public void write( List<Document> listDocs ) throws IOException
+    {
+        for ( Document doc : listDocs )
+        {
+            write( doc );
+        }
+    }
+
+    /**
+     * Waits until every queued document has been written
+     * @throws IOException if the writer failed
+     * @throws InterruptedException interrupted exception
+     */
+    void flush( ) throws IOException, InterruptedException
+    {
+        if ( _queue == null )
+        {
+            return;
+        }
+
+        long lQueued;
+
+        synchronized ( this )
+        {
+            lQueued = _lQueued;
+        }
+
+        enqueue( FLUSH );
+
+        synchronized ( this )
+        {
+            while ( ( _lWritten < lQueued ) && !_bWriterDone )
+            {
+                wait( );
+            }
+        }
+
+        checkError( );
+    }
+
+    /**
+     * Writes the queued documents and stops the writer
+     * @throws IOException if the writer failed
+     * @throws InterruptedException interrupted exception
+     */
+    void close( ) throws IOException, InterruptedException
+    {
+        if ( ( _queue == null ) || _bClosed )
+        {
+            return;
+        }
+
+        enqueue( END );
+
+        synchronized ( this )
+        {
+            while ( !_bWriterDone )
+            {
+                wait( );
+            }
+        }
+
+        // only once the writer is done : abort must still stop it if interrupted while waiting
+        _bClosed = true;
+        _executor.shutdown( );
+        checkError( );
+    }
+
+    /**
+     * Stops the writer without writing the queued documents, if the target
+     * has not been closed. The writer thread is always stopped.
+     */
+    void abort( )
+    {
+        if ( _queue == null )
+        {
+            return;
+        }
+
+        _executor.shutdownNow( );
+
+        if ( _bClosed )
+        {
+            return;
+        }
+
+        _bClosed = true;
+
+        int nDiscarded = _queue.size( );
+        _queue.clear( );
+
+        if ( nDiscarded > 0 )
+        {
+            AppLogService.info( "Indexer : " + nDiscarded + " queued documents not written" );
+        }
+    }
+
+    /**
+     * Puts an item in the queue, waiting for room while the writer runs
+     * @param doc the document or the FLUSH or END marker
+     * @throws IOException if the writer failed
+     * @throws InterruptedException interrupted exception
+     */
+    private void enqueue( Document doc ) throws IOException, InterruptedException
+    {
+        while ( !_queue.offer( doc, OFFER_TIMEOUT, TimeUnit.MILLISECONDS ) )
+        {
+            checkError( );
+        }
+    }
+
+    /**
+     * Rethrows the error of the writer, if any
+     * @throws IOException if the writer failed
+     */
+    private void checkError( ) throws IOException
+    {
+        Throwable error = _error;
+
+        if ( error instanceof IOException )
+        {
+            throw (IOException) error;
+        }
+
+        if ( error != null )
+        {
+            throw new IOException( "Index writer failed : " + error.getMessage( ), error );
+        }
+    }
+
+    /**
+     * Tells whether the heap used after the last garbage collection has just
+     * risen above the watermark. The garbage is not counted, so that the
+     * writer is not flushed at each document between two collections.
+     * @return true if the heap was below the watermark at the previous call
+     *         and is above it now
+     */
+    private boolean isCrossingHeapWatermark( )
+    {
+        if ( _nHeapWatermark <= 0 )
+        {
+            return false;
+        }
+
+        boolean bAbove = false;
+
+        for ( MemoryPoolMXBean pool : HEAP_POOLS )
+        {
+            MemoryUsage usage = pool.getCollectionUsage( );
+
+            if ( ( usage != null ) && ( usage.getMax( ) > 0 ) &&
+                    ( ( usage.getUsed( ) * PERCENT ) >= ( usage.getMax( ) * _nHeapWatermark ) ) )
+            {
+                bAbove = true;
+            }
+        }
+
+        boolean bCrossing = bAbove && !_bAboveHeapWatermark;
+        _bAboveHeapWatermark = bAbove;
+
+        return bCrossing;
+    }
+
+    /**
+     * Gets the heap pools which report their usage after a collection and
+     * support a usage threshold, that is the old generation of the collectors
+     * @return the pools
+     */
+    private static List<MemoryPoolMXBean> getHeapPools( )
+    {
+        List<MemoryPoolMXBean> listPools = new ArrayList<MemoryPoolMXBean>( );
+
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans( ) )
+        {
+            if ( ( pool.getType( ) == MemoryType.HEAP ) && pool.isUsageThresholdSupported( ) &&
+                    pool.isCollectionUsageThresholdSupported( ) )
+            {
+                listPools.add( pool );
+            }
+        }
+
+        return listPools;
+    }
+
+    /**
+     * Writer loop : writes the queued documents by batches until the END
+     * marker
+     */
+    private void writeBatches( )
+    {
+        List<Document> listBatch = new ArrayList<Document>( _nBatchSize );
+        long lDeadline = 0;
+
+        try
+        {
+            while ( true )
+            {
+                long lTimeout = listBatch.isEmpty( ) ? _lFlushIntervalNanos : ( lDeadline - System.nanoTime( ) );
+                Document doc = _queue.poll( Math.max( 0L, lTimeout ), TimeUnit.NANOSECONDS );
+
+                if ( doc == END )
+                {
+                    writeBatch( listBatch );
+
+                    break;
+                }
+
+                if ( ( doc != null ) && ( doc != FLUSH ) )
+                {
+                    if ( listBatch.isEmpty( ) )
+                    {
+                        lDeadline = System.nanoTime( ) + _lFlushIntervalNanos;
+                    }
+
+                    listBatch.add( doc );
+                }
+
+                if ( ( doc == FLUSH ) || ( listBatch.size( ) >= _nBatchSize )
+                        || ( ( System.nanoTime( ) - lDeadline ) >= 0 ) )
+                {
+                    writeBatch( listBatch );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            // aborted
+            Thread.currentThread( ).interrupt( );
+        }
+        catch ( Throwable e )
+        {
+            AppLogService.error( "Indexer : index writer failed : " + e.getMessage( ), e );
+            _error = e;
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                _bWriterDone = true;
+                notifyAll( );
+            }
+        }
+    }
+
+    /**
+     * Writes a batch to the target and empties it
+     * @param listBatch the batch
+     * @throws IOException i/o exception
+     */
+    private void writeBatch( List<Document> listBatch ) throws IOException
+    {
+        if ( listBatch.isEmpty( ) )
+        {
+            return;
+        }
+
+        _target.write( listBatch );
+
+        synchronized ( this )
+        {
+            _lWritten += listBatch.size( );
+            notifyAll( );
+        }
+
+        listBatch.clear( );
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingMetrics;
+import fr.paris.lutece.portal.service.search.IndexationService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+
+/**
+ * Writes the documents to a dedicated lucene index directory. The index is
+ * recreated when the target is opened and becomes visible to the searchers
+ * once committed, a failed build leaves the previous index untouched. <br>
+ * The index is only rebuilt by the full indexings : the incremental indexing
+ * of the core only updates the core index.
+ */
+final class DirectoryIndexTarget implements IndexTarget
+{
+    private static final String PROPERTY_ANALYSER_CLASS_NAME = "search.lucene.analyser.className";
+    private final IndexWriter _writer;
+
+    /**
+     * Opens the index directory
+     * @param strPath the path of the index directory
+     * @throws IOException i/o exception
+     */
+    DirectoryIndexTarget( String strPath ) throws IOException
+    {
+        IndexWriterConfig config = new IndexWriterConfig( IndexationService.LUCENE_INDEX_VERSION, getAnalyzer( ) );
+        config.setOpenMode( IndexWriterConfig.OpenMode.CREATE );
+        _writer = new IndexWriter( FSDirectory.open( new File( strPath ) ), config );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write( Document doc ) throws IOException
+    {
+        long lStart = System.nanoTime( );
+        _writer.addDocument( doc );
+        IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_WRITE, lStart );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write( List<Document> listDocs ) throws IOException
+    {
+        long lStart = System.nanoTime( );
+        _writer.addDocuments( listDocs );
+        IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_WRITE, lStart );
+    }
+
+    /**
+     * Commits the documents written and closes the index
+     * @throws IOException i/o exception
+     */
+    void commit( ) throws IOException
+    {
+        _writer.close( );
+    }
+
+    /**
+     * Discards the documents written and closes the index
+     */
+    void rollback( )
+    {
+        try
+        {
+            _writer.rollback( );
+        }
+        catch ( IOException e )
+        {
+            AppLogService.error( "Unable to rollback the index : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Creates the analyzer configured for the core index, so that the
+     * searches parse the queries the same way
+     * @return the analyzer
+     */
+    private static Analyzer getAnalyzer( )
+    {
+        String strClassName = AppPropertiesService.getProperty( PROPERTY_ANALYSER_CLASS_NAME );
+
+        if ( strClassName != null )
+        {
+            try
+            {
+                return (Analyzer) Class.forName( strClassName ).getDeclaredConstructor( ).newInstance( );
+            }
+            catch ( Exception e )
+            {
+                AppLogService.error( "Unable to create the analyzer " + strClassName + " : " + e.getMessage( ), e );
+            }
+        }
+
+        return new StandardAnalyzer( IndexationService.LUCENE_INDEX_VERSION );
+    }
+}
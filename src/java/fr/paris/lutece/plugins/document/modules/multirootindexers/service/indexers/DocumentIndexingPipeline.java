@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.document.MultiRootDocumentHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingJob;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingMetrics;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.util.IndexingThreadFactory;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Staged pipeline used by {@link MultiRootDocumentIndexer#indexDocuments()}.
+ * <br>
+ * Each published document goes through the following stages, separated by
+ * bounded queues :
+ * <ul>
+ * <li>fetch : reloads the documents with all their attributes, by batches</li>
+ * <li>extract : extracts the content (binaries included) and strips the tags,
+ * once for all the portlets the document is published in</li>
+ * <li>build : builds the lucene documents, one per portlet</li>
+ * <li>write : writes the lucene documents to the index</li>
+ * </ul>
+ * The documents are discovered by a dedicated thread, the write stage runs on the
+ * calling thread and writes the documents in discovery order, so the index
+ * gets the same documents as with the sequential indexing. An error on one
+ * document is logged and does not stop the indexing of the others.
+ */
+final class DocumentIndexingPipeline
+{
+    private static final String PROPERTY_ENABLED = "document-multirootindexers.pipeline.enabled";
+    private static final String PROPERTY_FETCH_THREADS = "document-multirootindexers.pipeline.fetch.threads";
+    private static final String PROPERTY_EXTRACT_THREADS = "document-multirootindexers.pipeline.extract.threads";
+    private static final String PROPERTY_BUILD_THREADS = "document-multirootindexers.pipeline.build.threads";
+    private static final String PROPERTY_QUEUE_SIZE = "document-multirootindexers.pipeline.queue.size";
+    private static final int DEFAULT_FETCH_THREADS = 2;
+    private static final int DEFAULT_BUILD_THREADS = 1;
+    private static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /** Number of queues an item can wait in, used to bound the items in flight */
+    private static final int NB_QUEUES = 4;
+    private static final long WRITER_POLL_TIMEOUT = 100L;
+    private final MultiRootDocumentIndexer _indexer;
+    private final int _nRootId;
+    private final IndexTarget _target;
+    private final IndexManifestRecorder _recorder;
+    private final IndexingJob _job;
+    private final String _strBaseUrl;
+    private final BlockingQueue<IndexingItem> _queueFetch;
+    private final BlockingQueue<IndexingItem> _queueExtract;
+    private final BlockingQueue<IndexingItem> _queueBuild;
+    private final BlockingQueue<IndexingItem> _queueWrite;
+    private final Semaphore _semaphoreInFlight;
+    private final List<ExecutorService> _listExecutors = new ArrayList<ExecutorService>( );
+    private volatile boolean _bDiscoveryDone;
+    private volatile long _lDiscovered;
+    private volatile Throwable _discoveryError;
+
+    /**
+     * Constructor
+     * @param indexer the indexer
+     * @param nRootId the root page of the documents to index
+     * @param target the index to write the documents to
+     * @param recorder the manifest recorder, or null if the manifest is
+     *            disabled
+     * @param job the progress of the indexing, checked by the write stage
+     */
+    DocumentIndexingPipeline( MultiRootDocumentIndexer indexer, int nRootId, IndexTarget target,
+        IndexManifestRecorder recorder, IndexingJob job )
+    {
+        int nQueueSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE ) );
+        _indexer = indexer;
+        _nRootId = nRootId;
+        _target = target;
+        _recorder = recorder;
+        _job = job;
+        _strBaseUrl = IndexerConfig.getInstance( ).getBaseUrl( );
+        _queueFetch = new ArrayBlockingQueue<IndexingItem>( nQueueSize );
+        _queueExtract = new ArrayBlockingQueue<IndexingItem>( nQueueSize );
+        _queueBuild = new ArrayBlockingQueue<IndexingItem>( nQueueSize );
+        _queueWrite = new ArrayBlockingQueue<IndexingItem>( nQueueSize );
+        _semaphoreInFlight = new Semaphore( nQueueSize * NB_QUEUES );
+    }
+
+    /**
+     * Tells whether the pipeline is enabled or not
+     * @return true if enabled, otherwise false
+     */
+    static boolean isEnabled( )
+    {
+        return Boolean.parseBoolean( AppPropertiesService.getProperty( PROPERTY_ENABLED, "true" ) );
+    }
+
+    /**
+     * Runs the pipeline until every published document has been written
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception
+     */
+    void run( ) throws IOException, InterruptedException
+    {
+        startStage( "fetch", PROPERTY_FETCH_THREADS, DEFAULT_FETCH_THREADS, new FetchStage( ) );
+        startStage( "extract", PROPERTY_EXTRACT_THREADS, Runtime.getRuntime( ).availableProcessors( ),
+                new ExtractStage( ) );
+        startStage( "build", PROPERTY_BUILD_THREADS, DEFAULT_BUILD_THREADS, new BuildStage( ) );
+
+        ExecutorService discovery = Executors.newSingleThreadExecutor( new IndexingThreadFactory( "discovery" ) );
+        _listExecutors.add( discovery );
+        discovery.execute( new Runnable( )
+        {
+            public void run( )
+            {
+                discover( );
+            }
+        } );
+
+        try
+        {
+            write( );
+        }
+        finally
+        {
+            for ( ExecutorService executor : _listExecutors )
+            {
+                executor.shutdownNow( );
+            }
+        }
+    }
+
+    /**
+     * Starts the workers of a stage
+     * @param strName the name of the stage
+     * @param strPropertyThreads the property giving the number of workers
+     * @param nDefaultThreads the default number of workers
+     * @param stage the stage
+     */
+    private void startStage( String strName, String strPropertyThreads, int nDefaultThreads, Stage stage )
+    {
+        int nThreads = Math.max( 1, AppPropertiesService.getPropertyInt( strPropertyThreads, nDefaultThreads ) );
+        ExecutorService executor = Executors.newFixedThreadPool( nThreads, new IndexingThreadFactory( strName ) );
+        _listExecutors.add( executor );
+
+        for ( int i = 0; i < nThreads; i++ )
+        {
+            executor.execute( stage );
+        }
+    }
+
+    /**
+     * Discovers the published documents under the root page and feeds the
+     * fetch stage
+     */
+    private void discover( )
+    {
+        try
+        {
+            long lSequence = 0;
+            Collection<PublishedDocument> collectionPublishedDocuments = _indexer
+                    .discoverPublishedDocuments( _nRootId );
+            _job.addToTotal( collectionPublishedDocuments.size( ) );
+
+            for ( PublishedDocument publishedDocument : collectionPublishedDocuments )
+            {
+                _semaphoreInFlight.acquire( );
+                _queueFetch.put( new IndexingItem( lSequence++, publishedDocument ) );
+                _lDiscovered = lSequence;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+        catch ( Throwable e )
+        {
+            _discoveryError = e;
+        }
+        finally
+        {
+            _bDiscoveryDone = true;
+        }
+    }
+
+    /**
+     * Writes the built documents in discovery order
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception
+     */
+    private void write( ) throws IOException, InterruptedException
+    {
+        Map<Long, IndexingItem> mapPending = new HashMap<Long, IndexingItem>( );
+        long lNextSequence = 0;
+
+        while ( !_bDiscoveryDone || ( lNextSequence < _lDiscovered ) )
+        {
+            checkDiscoveryError( );
+
+            IndexingItem item = _queueWrite.poll( WRITER_POLL_TIMEOUT, TimeUnit.MILLISECONDS );
+
+            if ( item != null )
+            {
+                mapPending.put( item.getSequence( ), item );
+            }
+
+            IndexingItem next = mapPending.remove( lNextSequence );
+
+            while ( next != null )
+            {
+                _job.checkpoint( );
+                _job.setCurrent( next.getPublishedDocument( ).getDescription( ) );
+
+                if ( next.getLuceneDocuments( ) != null )
+                {
+                    for ( org.apache.lucene.document.Document doc : next.getLuceneDocuments( ) )
+                    {
+                        _target.write( doc );
+                    }
+
+                    IndexingMetrics.getInstance( ).countDocument( );
+
+                    if ( _recorder != null )
+                    {
+                        _recorder.record( next.getIdDocument( ), next.getContent( ), next.getLuceneDocuments( ) );
+                    }
+                }
+
+                _job.itemDone( );
+                _semaphoreInFlight.release( );
+                lNextSequence++;
+                next = mapPending.remove( lNextSequence );
+            }
+        }
+
+        checkDiscoveryError( );
+    }
+
+    /**
+     * Rethrows the error raised during the discovery, if any
+     * @throws IOException i/o exception
+     */
+    private void checkDiscoveryError( ) throws IOException
+    {
+        Throwable error = _discoveryError;
+
+        if ( error instanceof IOException )
+        {
+            throw (IOException) error;
+        }
+        else if ( error instanceof RuntimeException )
+        {
+            throw (RuntimeException) error;
+        }
+        else if ( error != null )
+        {
+            throw new AppException( "Error during documents discovery : " + error.getMessage( ), error );
+        }
+    }
+
+    /**
+     * A stage of the pipeline : takes the items from one queue, processes them
+     * and hands them to the next queue. Failed items are still handed to the
+     * next queue so that the writer keeps the discovery order.
+     * Stages may take the waiting items by batches, see {@link #getBatchSize()}.
+     */
+    private abstract class Stage implements Runnable
+    {
+        private final BlockingQueue<IndexingItem> _queueIn;
+        private final BlockingQueue<IndexingItem> _queueOut;
+
+        /**
+         * Constructor
+         * @param queueIn the input queue
+         * @param queueOut the output queue
+         */
+        Stage( BlockingQueue<IndexingItem> queueIn, BlockingQueue<IndexingItem> queueOut )
+        {
+            _queueIn = queueIn;
+            _queueOut = queueOut;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run( )
+        {
+            try
+            {
+                List<IndexingItem> listItems = new ArrayList<IndexingItem>( getBatchSize( ) );
+
+                while ( !Thread.currentThread( ).isInterrupted( ) )
+                {
+                    listItems.add( _queueIn.take( ) );
+                    _queueIn.drainTo( listItems, getBatchSize( ) - 1 );
+                    prepare( listItems );
+
+                    for ( IndexingItem item : listItems )
+                    {
+                        if ( !item.isFailed( ) )
+                        {
+                            try
+                            {
+                                process( item );
+                            }
+                            catch ( Throwable e )
+                            {
+                                item.setFailed( );
+                                _indexer.logIndexingError( item.getPublishedDocument( ), e );
+                            }
+                        }
+
+                        _queueOut.put( item );
+                    }
+
+                    listItems.clear( );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+
+        /**
+         * Gets the maximum number of items taken at once
+         * @return the batch size
+         */
+        int getBatchSize( )
+        {
+            return 1;
+        }
+
+        /**
+         * Prepares the processing of a batch of items. Does nothing by
+         * default.
+         * @param listItems the items
+         */
+        void prepare( List<IndexingItem> listItems )
+        {
+            // nothing
+        }
+
+        /**
+         * Processes an item
+         * @param item the item
+         * @throws Exception if an error occurs
+         */
+        abstract void process( IndexingItem item ) throws Exception;
+    }
+
+    /**
+     * Reloads the full documents to get all their searchable attributes
+     */
+    private class FetchStage extends Stage
+    {
+        private final int _nBatchSize = MultiRootDocumentHome.getBatchSize( );
+
+        /**
+         * Constructor
+         */
+        FetchStage( )
+        {
+            super( _queueFetch, _queueExtract );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        int getBatchSize( )
+        {
+            return _nBatchSize;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void prepare( List<IndexingItem> listItems )
+        {
+            Set<Integer> setIdsDocuments = new HashSet<Integer>( );
+
+            for ( IndexingItem item : listItems )
+            {
+                setIdsDocuments.add( item.getIdDocument( ) );
+            }
+
+            try
+            {
+                long lStart = System.nanoTime( );
+                Map<Integer, Document> mapDocuments = MultiRootDocumentHome.findByPrimaryKeys( setIdsDocuments );
+                IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_FETCH, lStart );
+
+                for ( IndexingItem item : listItems )
+                {
+                    item.setDocument( mapDocuments.get( item.getIdDocument( ) ) );
+                }
+            }
+            catch ( Throwable e )
+            {
+                // isolate the failure to this batch
+                for ( IndexingItem item : listItems )
+                {
+                    item.setFailed( );
+                    _indexer.logIndexingError( item.getPublishedDocument( ), e );
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void process( IndexingItem item )
+        {
+            if ( item.getDocument( ) == null )
+            {
+                throw new AppException( "Document not found" );
+            }
+        }
+    }
+
+    /**
+     * Extracts and parses the content of the document, once for all its
+     * portlets
+     */
+    private class ExtractStage extends Stage
+    {
+        /**
+         * Constructor
+         */
+        ExtractStage( )
+        {
+            super( _queueExtract, _queueBuild );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void process( IndexingItem item ) throws IOException
+        {
+            item.setContent( MultiRootDocumentIndexer.getIndexedContent( item.getDocument( ) ) );
+
+            // the document is no longer needed
+            item.setDocument( null );
+        }
+    }
+
+    /**
+     * Builds the lucene documents, one per portlet
+     */
+    private class BuildStage extends Stage
+    {
+        /**
+         * Constructor
+         */
+        BuildStage( )
+        {
+            super( _queueBuild, _queueWrite );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        void process( IndexingItem item )
+        {
+            item.setLuceneDocuments( _indexer.buildDocuments( item.getPublishedDocument( ), item.getContent( ),
+                    _strBaseUrl ) );
+
+            if ( _recorder != null )
+            {
+                // computed here rather than by the writer, the content is kept for the recorder
+                item.getContent( ).getContentHash( );
+            }
+            else
+            {
+                // the intermediate result is no longer needed
+                item.setContent( null );
+            }
+        }
+    }
+
+    /**
+     * A published document going through the pipeline
+     */
+    private static final class IndexingItem
+    {
+        private final long _lSequence;
+        private final PublishedDocument _publishedDocument;
+        private Document _document;
+        private IndexedDocumentContent _content;
+        private List<org.apache.lucene.document.Document> _listLuceneDocuments;
+        private boolean _bFailed;
+
+        /**
+         * Constructor
+         * @param lSequence the discovery order
+         * @param publishedDocument the document and its portlets
+         */
+        IndexingItem( long lSequence, PublishedDocument publishedDocument )
+        {
+            _lSequence = lSequence;
+            _publishedDocument = publishedDocument;
+        }
+
+        long getSequence( )
+        {
+            return _lSequence;
+        }
+
+        PublishedDocument getPublishedDocument( )
+        {
+            return _publishedDocument;
+        }
+
+        int getIdDocument( )
+        {
+            return _publishedDocument.getIdDocument( );
+        }
+
+        Document getDocument( )
+        {
+            return _document;
+        }
+
+        void setDocument( Document document )
+        {
+            _document = document;
+        }
+
+        IndexedDocumentContent getContent( )
+        {
+            return _content;
+        }
+
+        void setContent( IndexedDocumentContent content )
+        {
+            _content = content;
+        }
+
+        List<org.apache.lucene.document.Document> getLuceneDocuments( )
+        {
+            return _listLuceneDocuments;
+        }
+
+        void setLuceneDocuments( List<org.apache.lucene.document.Document> listLuceneDocuments )
+        {
+            _listLuceneDocuments = listLuceneDocuments;
+        }
+
+        boolean isFailed( )
+        {
+            return _bFailed;
+        }
+
+        void setFailed( )
+        {
+            _bFailed = true;
+        }
+    }
+}
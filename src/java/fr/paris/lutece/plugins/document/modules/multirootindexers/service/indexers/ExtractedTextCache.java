@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Least recently used cache of the text extracted from binary attributes by
+ * the file indexers. The key is the attribute (document, attribute and
+ * modification date of the document), so that an attribute already
+ * extracted is found without reading its binary value. An attachment shared
+ * by several documents is extracted and stored once per document. The
+ * cache is bounded by a number of entries and a total number of characters.
+ */
+public final class ExtractedTextCache
+{
+    private static final String PROPERTY_MAX_ENTRIES = "document-multirootindexers.extractedTextCache.maxEntries";
+    private static final String PROPERTY_MAX_CHARS = "document-multirootindexers.extractedTextCache.maxChars";
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_MAX_CHARS = 20000000L;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String KEY_SEPARATOR = "|";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(  );
+    private static final ExtractedTextCache _singleton = new ExtractedTextCache(  );
+    private final Map<String, String> _mapTexts = new LinkedHashMap<String, String>( 16, 0.75f, true );
+    private final AtomicLong _lHits = new AtomicLong(  );
+    private final AtomicLong _lMisses = new AtomicLong(  );
+    private final AtomicLong _lEvictions = new AtomicLong(  );
+    private int _nMaxEntries;
+    private long _lMaxChars;
+    private long _lChars;
+
+    /**
+     * Private constructor
+     */
+    private ExtractedTextCache(  )
+    {
+        _nMaxEntries = AppPropertiesService.getPropertyInt( PROPERTY_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+        _lMaxChars = Long.parseLong( AppPropertiesService.getProperty( PROPERTY_MAX_CHARS,
+                    Long.toString( DEFAULT_MAX_CHARS ) ) );
+    }
+
+    /**
+     * Returns the unique instance
+     * @return the instance
+     */
+    public static ExtractedTextCache getInstance(  )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Tells whether the cache is enabled or not
+     * @return true if enabled (ie: max entries greater than 0)
+     */
+    public boolean isEnabled(  )
+    {
+        return _nMaxEntries > 0;
+    }
+
+    /**
+     * Builds the key of a binary attribute at a given version of its document
+     * @param nIdDocument the document id
+     * @param nIdAttribute the attribute id
+     * @param dateModification the modification date of the document
+     * @return the key
+     */
+    public static String getAttributeKey( int nIdDocument, int nIdAttribute, Date dateModification )
+    {
+        return nIdDocument + KEY_SEPARATOR + nIdAttribute + KEY_SEPARATOR + dateModification.getTime(  );
+    }
+
+    /**
+     * Formats a digest as an hexadecimal string
+     * @param hash the digest
+     * @return the hexadecimal string
+     */
+    static String toHex( byte[] hash )
+    {
+        StringBuilder sbHex = new StringBuilder( hash.length * 2 );
+
+        for ( byte b : hash )
+        {
+            sbHex.append( HEX_DIGITS[( b >> 4 ) & 0xF] ).append( HEX_DIGITS[b & 0xF] );
+        }
+
+        return sbHex.toString(  );
+    }
+
+    /**
+     * Creates the digest used for the content hashes
+     * @return the digest
+     */
+    public static MessageDigest newDigest(  )
+    {
+        try
+        {
+            return MessageDigest.getInstance( DIGEST_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new AppException( e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Gets the text extracted from a binary attribute
+     * @param strAttributeKey the key of the attribute, see
+     *            {@link #getAttributeKey(int, int, Date)}
+     * @return the text, or null if not in cache
+     */
+    public synchronized String get( String strAttributeKey )
+    {
+        String strText = _mapTexts.get( strAttributeKey );
+
+        if ( strText == null )
+        {
+            _lMisses.incrementAndGet(  );
+        }
+        else
+        {
+            _lHits.incrementAndGet(  );
+        }
+
+        return strText;
+    }
+
+    /**
+     * Puts the text extracted from a binary attribute, evicting the least
+     * recently used ones if needed
+     * @param strKey the key of the attribute, see
+     *            {@link #getAttributeKey(int, int, Date)}
+     * @param strText the text
+     */
+    public synchronized void put( String strKey, String strText )
+    {
+        if ( !isEnabled(  ) || ( strText == null ) || ( strText.length(  ) > _lMaxChars ) )
+        {
+            return;
+        }
+
+        String strOldText = _mapTexts.put( strKey, strText );
+        _lChars += strText.length(  );
+
+        if ( strOldText != null )
+        {
+            _lChars -= strOldText.length(  );
+        }
+
+        Iterator<Map.Entry<String, String>> it = _mapTexts.entrySet(  ).iterator(  );
+
+        while ( ( ( _mapTexts.size(  ) > _nMaxEntries ) || ( _lChars > _lMaxChars ) ) && it.hasNext(  ) )
+        {
+            Map.Entry<String, String> eldest = it.next(  );
+
+            if ( eldest.getKey(  ).equals( strKey ) )
+            {
+                continue;
+            }
+
+            _lChars -= eldest.getValue(  ).length(  );
+            it.remove(  );
+            _lEvictions.incrementAndGet(  );
+        }
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public synchronized void clear(  )
+    {
+        _mapTexts.clear(  );
+        _lChars = 0;
+    }
+
+    /**
+     * Gets the number of entries
+     * @return the number of entries
+     */
+    public synchronized int getSize(  )
+    {
+        return _mapTexts.size(  );
+    }
+
+    /**
+     * Gets the total number of characters of the entries
+     * @return the number of characters
+     */
+    public synchronized long getChars(  )
+    {
+        return _lChars;
+    }
+
+    /**
+     * Gets the number of hits
+     * @return the number of hits
+     */
+    public long getHits(  )
+    {
+        return _lHits.get(  );
+    }
+
+    /**
+     * Gets the number of misses
+     * @return the number of misses
+     */
+    public long getMisses(  )
+    {
+        return _lMisses.get(  );
+    }
+
+    /**
+     * Gets the number of evictions
+     * @return the number of evictions
+     */
+    public long getEvictions(  )
+    {
+        return _lEvictions.get(  );
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+
+/**
+ * Strips the tags of an HTML fragment and decodes its character entities, in
+ * a single pass over the characters. Produces the same words, separated at the
+ * same places, as the Tika HtmlParser with a BodyContentHandler (line breaks
+ * after block elements, tabs before cells and list items, script, style and
+ * title contents skipped). Input it cannot handle safely (unterminated tag or
+ * comment, CDATA section) is reported as malformed so that the caller can fall
+ * back to Tika.
+ */
+public final class HtmlTextNormalizer
+{
+    /** Elements followed by a line break, as in Tika XHTMLContentHandler */
+    private static final Set<String> ENDLINE_ELEMENTS = new HashSet<String>( Arrays.asList( "p", "h1", "h2", "h3",
+                "h4", "h5", "h6", "div", "ul", "ol", "dl", "pre", "hr", "blockquote", "address", "fieldset", "table",
+                "form", "noscript", "li", "dt", "dd", "noframes", "br", "tr", "select", "option" ) );
+
+    /** Elements preceded by a tabulation, as in Tika XHTMLContentHandler */
+    private static final Set<String> INDENT_ELEMENTS = new HashSet<String>( Arrays.asList( "li", "dd", "dt", "td",
+                "th", "frame" ) );
+
+    /** Elements which may be closed implicitly by the next one */
+    private static final Set<String> IMPLICIT_END_ELEMENTS = new HashSet<String>( Arrays.asList( "p", "li", "dt",
+                "dd", "tr", "td", "th", "option" ) );
+
+    /** Elements without end tag */
+    private static final Set<String> VOID_ELEMENTS = new HashSet<String>( Arrays.asList( "br", "hr", "img", "input",
+                "meta", "link", "area", "base", "col", "param", "embed", "wbr" ) );
+
+    /** Elements whose content is not text */
+    private static final Set<String> SKIPPED_ELEMENTS = new HashSet<String>( Arrays.asList( "script", "style",
+                "title" ) );
+    private static final String PARAGRAPH = "p";
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final String CDATA_START = "<![CDATA[";
+    private static final String ENTITY_APOS = "&apos;";
+    private static final int MAX_ENTITY_LENGTH = 12;
+    private static final int MALFORMED = -1;
+
+    /**
+     * Private constructor
+     */
+    private HtmlTextNormalizer(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Strips the tags and decodes the entities
+     * @param strHtml the HTML fragment
+     * @return the text, or null if the fragment is malformed
+     */
+    public static String normalize( String strHtml )
+    {
+        int nLength = strHtml.length(  );
+        StringBuilder sbText = new StringBuilder( nLength );
+        Set<String> setOpenElements = new HashSet<String>(  );
+        int i = 0;
+
+        while ( i < nLength )
+        {
+            char c = strHtml.charAt( i );
+
+            if ( c == '<' )
+            {
+                i = readMarkup( strHtml, i, sbText, setOpenElements );
+
+                if ( i == MALFORMED )
+                {
+                    return null;
+                }
+            }
+            else if ( c == '&' )
+            {
+                i = readEntity( strHtml, i, sbText );
+            }
+            else
+            {
+                sbText.append( c );
+                i++;
+            }
+        }
+
+        // the elements still open are closed at the end of the body
+        for ( String strName : setOpenElements )
+        {
+            if ( ENDLINE_ELEMENTS.contains( strName ) )
+            {
+                sbText.append( '\n' );
+            }
+        }
+
+        return sbText.toString(  );
+    }
+
+    /**
+     * Reads a tag, a comment or a declaration
+     * @param strHtml the HTML fragment
+     * @param nStart the index of the '&lt;'
+     * @param sbText the text
+     * @param setOpenElements the elements open and not closed yet, among
+     *            {@link #IMPLICIT_END_ELEMENTS}
+     * @return the index following the markup, or {@link #MALFORMED}
+     */
+    private static int readMarkup( String strHtml, int nStart, StringBuilder sbText, Set<String> setOpenElements )
+    {
+        int nLength = strHtml.length(  );
+
+        if ( strHtml.startsWith( COMMENT_START, nStart ) )
+        {
+            int nEnd = strHtml.indexOf( COMMENT_END, nStart + COMMENT_START.length(  ) );
+
+            return ( nEnd < 0 ) ? MALFORMED : ( nEnd + COMMENT_END.length(  ) );
+        }
+
+        if ( strHtml.startsWith( CDATA_START, nStart ) )
+        {
+            return MALFORMED;
+        }
+
+        if ( ( nStart + 1 ) >= nLength )
+        {
+            sbText.append( '<' );
+
+            return nStart + 1;
+        }
+
+        char cNext = strHtml.charAt( nStart + 1 );
+
+        if ( ( cNext == '!' ) || ( cNext == '?' ) )
+        {
+            int nEnd = strHtml.indexOf( '>', nStart );
+
+            return ( nEnd < 0 ) ? MALFORMED : ( nEnd + 1 );
+        }
+
+        boolean bEndTag = cNext == '/';
+        int nNameStart = bEndTag ? ( nStart + 2 ) : ( nStart + 1 );
+
+        if ( ( nNameStart >= nLength ) || !Character.isLetter( strHtml.charAt( nNameStart ) ) )
+        {
+            // not a tag : "a < b"
+            sbText.append( '<' );
+
+            return nStart + 1;
+        }
+
+        int nNameEnd = nNameStart;
+
+        while ( ( nNameEnd < nLength ) && isNameChar( strHtml.charAt( nNameEnd ) ) )
+        {
+            nNameEnd++;
+        }
+
+        String strName = strHtml.substring( nNameStart, nNameEnd ).toLowerCase( Locale.ENGLISH );
+        int nEnd = findTagEnd( strHtml, nNameEnd );
+
+        if ( nEnd == MALFORMED )
+        {
+            return MALFORMED;
+        }
+
+        boolean bSelfClosing = strHtml.charAt( nEnd - 1 ) == '/';
+
+        if ( bEndTag )
+        {
+            endElement( strName, sbText, setOpenElements );
+
+            return nEnd + 1;
+        }
+
+        startElement( strName, sbText, setOpenElements );
+
+        if ( bSelfClosing || VOID_ELEMENTS.contains( strName ) )
+        {
+            endElement( strName, sbText, setOpenElements );
+        }
+        else if ( SKIPPED_ELEMENTS.contains( strName ) )
+        {
+            return skipElementContent( strHtml, strName, nEnd + 1 );
+        }
+
+        return nEnd + 1;
+    }
+
+    /**
+     * Handles a start tag
+     * @param strName the element name
+     * @param sbText the text
+     * @param setOpenElements the elements open and not closed yet
+     */
+    private static void startElement( String strName, StringBuilder sbText, Set<String> setOpenElements )
+    {
+        if ( IMPLICIT_END_ELEMENTS.contains( strName ) && setOpenElements.contains( strName ) )
+        {
+            // <p>a<p>b : the first paragraph is closed
+            endElement( strName, sbText, setOpenElements );
+        }
+        else if ( ENDLINE_ELEMENTS.contains( strName ) && setOpenElements.contains( PARAGRAPH ) )
+        {
+            // block elements close the current paragraph
+            endElement( PARAGRAPH, sbText, setOpenElements );
+        }
+
+        if ( INDENT_ELEMENTS.contains( strName ) )
+        {
+            sbText.append( '\t' );
+        }
+
+        if ( IMPLICIT_END_ELEMENTS.contains( strName ) )
+        {
+            setOpenElements.add( strName );
+        }
+    }
+
+    /**
+     * Handles an end tag
+     * @param strName the element name
+     * @param sbText the text
+     * @param setOpenElements the elements open and not closed yet
+     */
+    private static void endElement( String strName, StringBuilder sbText, Set<String> setOpenElements )
+    {
+        setOpenElements.remove( strName );
+
+        if ( ENDLINE_ELEMENTS.contains( strName ) )
+        {
+            sbText.append( '\n' );
+        }
+    }
+
+    /**
+     * Finds the '&gt;' ending a tag, skipping quoted attribute values
+     * @param strHtml the HTML fragment
+     * @param nFrom the index following the element name
+     * @return the index of the '&gt;', or {@link #MALFORMED}
+     */
+    private static int findTagEnd( String strHtml, int nFrom )
+    {
+        char cQuote = 0;
+
+        for ( int i = nFrom; i < strHtml.length(  ); i++ )
+        {
+            char c = strHtml.charAt( i );
+
+            if ( cQuote != 0 )
+            {
+                if ( c == cQuote )
+                {
+                    cQuote = 0;
+                }
+            }
+            else if ( ( c == '"' ) || ( c == '\'' ) )
+            {
+                cQuote = c;
+            }
+            else if ( c == '>' )
+            {
+                return i;
+            }
+            else if ( c == '<' )
+            {
+                return MALFORMED;
+            }
+        }
+
+        return MALFORMED;
+    }
+
+    /**
+     * Skips the content of an element up to its end tag
+     * @param strHtml the HTML fragment
+     * @param strName the element name
+     * @param nFrom the index following the start tag
+     * @return the index following the end tag, or {@link #MALFORMED}
+     */
+    private static int skipElementContent( String strHtml, String strName, int nFrom )
+    {
+        int nLength = strHtml.length(  );
+
+        for ( int i = strHtml.indexOf( "</", nFrom ); i >= 0; i = strHtml.indexOf( "</", i + 2 ) )
+        {
+            int nNameEnd = i + 2 + strName.length(  );
+
+            if ( strHtml.regionMatches( true, i + 2, strName, 0, strName.length(  ) ) &&
+                    ( ( nNameEnd >= nLength ) || !isNameChar( strHtml.charAt( nNameEnd ) ) ) )
+            {
+                int nEnd = strHtml.indexOf( '>', nNameEnd );
+
+                return ( nEnd < 0 ) ? MALFORMED : ( nEnd + 1 );
+            }
+        }
+
+        return MALFORMED;
+    }
+
+    /**
+     * Reads a character entity. Unknown entities are kept as is.
+     * @param strHtml the HTML fragment
+     * @param nStart the index of the '&amp;'
+     * @param sbText the text
+     * @return the index following the entity
+     */
+    private static int readEntity( String strHtml, int nStart, StringBuilder sbText )
+    {
+        int nEnd = strHtml.indexOf( ';', nStart + 1 );
+
+        if ( ( nEnd < 0 ) || ( ( nEnd - nStart ) > MAX_ENTITY_LENGTH ) || ( nEnd == ( nStart + 1 ) ) )
+        {
+            sbText.append( '&' );
+
+            return nStart + 1;
+        }
+
+        String strEntity = strHtml.substring( nStart, nEnd + 1 );
+
+        if ( strEntity.charAt( 1 ) == '#' )
+        {
+            int nCodePoint = parseCodePoint( strEntity );
+
+            if ( nCodePoint < 0 )
+            {
+                sbText.append( strEntity );
+            }
+            else
+            {
+                sbText.appendCodePoint( nCodePoint );
+            }
+        }
+        else if ( ENTITY_APOS.equals( strEntity ) )
+        {
+            sbText.append( '\'' );
+        }
+        else
+        {
+            sbText.append( StringEscapeUtils.unescapeHtml( strEntity ) );
+        }
+
+        return nEnd + 1;
+    }
+
+    /**
+     * Parses a numeric character reference (&amp;#233; or &amp;#xE9;)
+     * @param strEntity the entity
+     * @return the code point, or -1 if invalid
+     */
+    private static int parseCodePoint( String strEntity )
+    {
+        boolean bHexa = ( strEntity.length(  ) > 3 ) &&
+            ( ( strEntity.charAt( 2 ) == 'x' ) || ( strEntity.charAt( 2 ) == 'X' ) );
+        String strDigits = strEntity.substring( bHexa ? 3 : 2, strEntity.length(  ) - 1 );
+
+        try
+        {
+            int nCodePoint = Integer.parseInt( strDigits, bHexa ? 16 : 10 );
+
+            return Character.isValidCodePoint( nCodePoint ) ? nCodePoint : ( -1 );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Tells whether a character may be part of an element name
+     * @param c the character
+     * @return true if it may
+     */
+    private static boolean isNameChar( char c )
+    {
+        return Character.isLetterOrDigit( c ) || ( c == ':' ) || ( c == '-' ) || ( c == '_' );
+    }
+}
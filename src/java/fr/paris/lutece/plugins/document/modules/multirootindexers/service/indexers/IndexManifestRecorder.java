@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.document.MultiRootDocumentHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest.IndexManifestEntry;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest.IndexManifestHome;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Rebuilds the index manifest during a full indexing : the manifest is cleared
+ * when the recorder is created and gets one entry per written lucene document.
+ * Not thread safe, to be used by the thread writing the lucene documents.
+ */
+final class IndexManifestRecorder
+{
+    private final int _nBatchSize;
+    private final List<IndexManifestEntry> _listEntries;
+
+    /**
+     * Constructor. Clears the manifest.
+     */
+    IndexManifestRecorder( )
+    {
+        _nBatchSize = MultiRootDocumentHome.getBatchSize( );
+        _listEntries = new ArrayList<IndexManifestEntry>( _nBatchSize );
+        IndexManifestHome.removeAll( );
+    }
+
+    /**
+     * Records the lucene documents written for a document
+     * @param nIdDocument the document id
+     * @param content the content of the document
+     * @param listDocs the lucene documents written, one per portlet
+     */
+    void record( int nIdDocument, IndexedDocumentContent content, List<org.apache.lucene.document.Document> listDocs )
+    {
+        _listEntries.addAll( IndexManifestService.newEntries( nIdDocument, content, listDocs ) );
+
+        if ( _listEntries.size( ) >= _nBatchSize )
+        {
+            flush( );
+        }
+    }
+
+    /**
+     * Writes the recorded entries to the manifest
+     */
+    void flush( )
+    {
+        if ( !_listEntries.isEmpty( ) )
+        {
+            IndexManifestHome.create( _listEntries );
+            _listEntries.clear( );
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.business.Document;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.document.MultiRootDocumentHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction.MultiRootIndexerActionHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest.IndexManifestEntry;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.manifest.IndexManifestHome;
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.service.search.IndexationService;
+import fr.paris.lutece.portal.service.search.SearchItem;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Incremental reindexing of the published documents, based on the index
+ * manifest. <br>
+ * The manifest is rebuilt by each full indexing and keeps, for each
+ * document/portlet pair in the index, the modification date of the document,
+ * the hash of its indexed content and the role of the page. {@link #reindexChanged()}
+ * compares it with the documents currently published and queues indexer
+ * actions only for the pairs whose inputs changed, which are then processed by
+ * the incremental indexing :
+ * <ul>
+ * <li>new pairs and pairs whose role changed are reindexed</li>
+ * <li>pairs whose document has a new modification date are reindexed if the
+ * hash of their content changed</li>
+ * <li>pairs no longer published are deleted</li>
+ * </ul>
+ * The entry of a reindexed pair is only written when the incremental indexing
+ * rebuilds its document, see {@link #recordIndexed(int, IndexedDocumentContent, List)},
+ * and the entry of a deleted pair is removed once its action is stored, so
+ * that a pair stays changed until its action has been processed.
+ */
+public final class IndexManifestService
+{
+    private static final String PROPERTY_ENABLED = "document-multirootindexers.manifest.enabled";
+    private static final String PORTLET_SEPARATOR = "&";
+
+    /**
+     * Private constructor
+     */
+    private IndexManifestService( )
+    {
+        // nothing
+    }
+
+    /**
+     * Tells whether the manifest is maintained or not
+     * @return true if enabled, otherwise false
+     */
+    public static boolean isEnabled( )
+    {
+        return Boolean.parseBoolean( AppPropertiesService.getProperty( PROPERTY_ENABLED, "false" ) );
+    }
+
+    /**
+     * Builds a manifest entry
+     * @param nIdDocument the document id
+     * @param nIdPortlet the portlet id
+     * @param strRole the role of the page of the portlet
+     * @param dateModification the modification date of the document
+     * @param strContentHash the hash of the indexed content, or null if
+     *            unknown
+     * @return the entry
+     */
+    static IndexManifestEntry newEntry( int nIdDocument, int nIdPortlet, String strRole, Timestamp dateModification,
+            String strContentHash )
+    {
+        IndexManifestEntry entry = new IndexManifestEntry( );
+        entry.setDocumentPortletId( MultiRootDocumentIndexer.getPortletDocumentId( nIdDocument, nIdPortlet ) );
+        entry.setIdDocument( nIdDocument );
+        entry.setIdPortlet( nIdPortlet );
+        entry.setRole( strRole );
+        entry.setDateModification( dateModification );
+        entry.setContentHash( strContentHash );
+
+        return entry;
+    }
+
+    /**
+     * Builds the manifest entries of the lucene documents built for a
+     * document, one per portlet
+     * @param nIdDocument the document id
+     * @param content the content of the document
+     * @param listDocs the lucene documents
+     * @return the entries
+     */
+    static List<IndexManifestEntry> newEntries( int nIdDocument, IndexedDocumentContent content,
+            List<org.apache.lucene.document.Document> listDocs )
+    {
+        List<IndexManifestEntry> listEntries = new ArrayList<IndexManifestEntry>( listDocs.size( ) );
+
+        for ( org.apache.lucene.document.Document doc : listDocs )
+        {
+            String strDocumentPortletId = doc.get( SearchItem.FIELD_DOCUMENT_PORTLET_ID );
+            int nIdPortlet = Integer.parseInt( strDocumentPortletId.substring( strDocumentPortletId
+                    .lastIndexOf( PORTLET_SEPARATOR ) + 1 ) );
+
+            listEntries.add( newEntry( nIdDocument, nIdPortlet, doc.get( SearchItem.FIELD_ROLE ),
+                    content.getDateModification( ), content.getContentHash( ) ) );
+        }
+
+        return listEntries;
+    }
+
+    /**
+     * Replaces the manifest entries of a document whose lucene documents have
+     * just been rebuilt by the incremental indexing. The content holds the
+     * modification date the document was read with, so a document updated
+     * meanwhile is reindexed by the next run.
+     * @param nIdDocument the document id
+     * @param content the content of the document
+     * @param listDocs the lucene documents, one per portlet
+     */
+    static void recordIndexed( int nIdDocument, IndexedDocumentContent content,
+            List<org.apache.lucene.document.Document> listDocs )
+    {
+        List<IndexManifestEntry> listEntries = newEntries( nIdDocument, content, listDocs );
+
+        for ( IndexManifestEntry entry : listEntries )
+        {
+            IndexManifestHome.remove( entry.getDocumentPortletId( ) );
+        }
+
+        IndexManifestHome.create( listEntries );
+    }
+
+    /**
+     * Queues the indexer actions for the document/portlet pairs which changed
+     * since they were indexed. The entries of the reindexed pairs are written
+     * when they are indexed again, those of the deleted pairs are removed once
+     * the actions are stored.
+     * @return the logs
+     */
+    public static String reindexChanged( )
+    {
+        IndexerConfig.refresh( );
+        AttributeIndexingPlanService.getInstance( ).reset( );
+
+        MultiRootDocumentIndexer indexer = new MultiRootDocumentIndexer( );
+        Map<String, IndexManifestEntry> mapManifest = IndexManifestHome.findAll( );
+        Collection<PublishedDocument> collectionPublishedDocuments = indexer.discoverPublishedDocuments( );
+        List<Integer> listIdsDocuments = new ArrayList<Integer>( collectionPublishedDocuments.size( ) );
+
+        for ( PublishedDocument publishedDocument : collectionPublishedDocuments )
+        {
+            listIdsDocuments.add( publishedDocument.getIdDocument( ) );
+        }
+
+        Map<Integer, Timestamp> mapDates = MultiRootDocumentHome.findModificationDates( listIdsDocuments );
+        List<PublishedDocument> listToHash = new ArrayList<PublishedDocument>( );
+        Map<String, IndexManifestEntry> mapToHash = new HashMap<String, IndexManifestEntry>( );
+        List<IndexerAction> listActions = new ArrayList<IndexerAction>( );
+        int nUnchanged = 0;
+        int nReindexed = 0;
+
+        for ( PublishedDocument publishedDocument : collectionPublishedDocuments )
+        {
+            int nIdDocument = publishedDocument.getIdDocument( );
+            Timestamp dateModification = mapDates.get( nIdDocument );
+
+            if ( dateModification == null )
+            {
+                // deleted since the discovery, its entries are removed below
+                continue;
+            }
+
+            boolean[] changed = new boolean[publishedDocument.getPortletCount( )];
+            boolean bHashNeeded = false;
+
+            for ( int i = 0; i < publishedDocument.getPortletCount( ); i++ )
+            {
+                IndexManifestEntry entry = mapManifest.remove( MultiRootDocumentIndexer.getPortletDocumentId(
+                        nIdDocument, publishedDocument.getIdPortlet( i ) ) );
+
+                if ( ( entry == null ) || !StringUtils.equals( entry.getRole( ), publishedDocument.getRole( i ) )
+                        || ( ( entry.getContentHash( ) == null ) && !isSameDate( entry, dateModification ) ) )
+                {
+                    changed[i] = true;
+                }
+                else if ( !isSameDate( entry, dateModification ) )
+                {
+                    bHashNeeded = true;
+                    mapToHash.put( entry.getDocumentPortletId( ), entry );
+                }
+            }
+
+            if ( bHashNeeded )
+            {
+                // decided once the content is rebuilt, by batches
+                listToHash.add( publishedDocument );
+            }
+
+            int nChanged = queueActions( indexer, publishedDocument, changed, listActions );
+            nReindexed += nChanged;
+            nUnchanged += ( publishedDocument.getPortletCount( ) - nChanged );
+        }
+
+        int nHashChanged = reindexIfHashChanged( indexer, listToHash, mapToHash, mapDates, listActions );
+        nReindexed += nHashChanged;
+        nUnchanged -= nHashChanged;
+
+        // the pairs left in the manifest are no longer published
+        for ( IndexManifestEntry entry : mapManifest.values( ) )
+        {
+            listActions.add( newAction( entry.getIdDocument( ), indexer, IndexerAction.TASK_DELETE,
+                    entry.getIdPortlet( ) ) );
+        }
+
+        MultiRootIndexerActionHome.create( listActions );
+
+        // if this fails, the next run queues the deletes again
+        for ( IndexManifestEntry entry : mapManifest.values( ) )
+        {
+            IndexManifestHome.remove( entry.getDocumentPortletId( ) );
+        }
+
+        return "Unchanged : " + nUnchanged + ", reindexed : " + nReindexed + ", deleted : " + mapManifest.size( );
+    }
+
+    /**
+     * Rebuilds the content of the documents whose modification date changed
+     * and queues the pairs whose content hash changed
+     * @param indexer the indexer
+     * @param listPublishedDocuments the documents
+     * @param mapEntries the entries of the pairs to check, by document portlet
+     *            id
+     * @param mapDates the modification dates by document id
+     * @param listActions the list the actions are added to
+     * @return the number of pairs queued
+     */
+    private static int reindexIfHashChanged( MultiRootDocumentIndexer indexer,
+            List<PublishedDocument> listPublishedDocuments, Map<String, IndexManifestEntry> mapEntries,
+            Map<Integer, Timestamp> mapDates, List<IndexerAction> listActions )
+    {
+        int nBatchSize = MultiRootDocumentHome.getBatchSize( );
+        int nReindexed = 0;
+
+        for ( int nStart = 0; nStart < listPublishedDocuments.size( ); nStart += nBatchSize )
+        {
+            List<PublishedDocument> listBatch = listPublishedDocuments.subList( nStart,
+                    Math.min( nStart + nBatchSize, listPublishedDocuments.size( ) ) );
+            List<Integer> listIdsDocuments = new ArrayList<Integer>( listBatch.size( ) );
+
+            for ( PublishedDocument publishedDocument : listBatch )
+            {
+                listIdsDocuments.add( publishedDocument.getIdDocument( ) );
+            }
+
+            Map<Integer, Document> mapDocuments = MultiRootDocumentHome.findByPrimaryKeys( listIdsDocuments );
+
+            for ( PublishedDocument publishedDocument : listBatch )
+            {
+                int nIdDocument = publishedDocument.getIdDocument( );
+                Timestamp dateModification = mapDates.get( nIdDocument );
+                String strContentHash = null;
+
+                try
+                {
+                    Document document = mapDocuments.get( nIdDocument );
+
+                    if ( document != null )
+                    {
+                        strContentHash = MultiRootDocumentIndexer.getIndexedContent( document ).getContentHash( );
+                    }
+                }
+                catch ( Exception e )
+                {
+                    // the incremental indexing will report the error
+                    AppLogService.error( "Unable to compute the content hash of document " + nIdDocument + " : "
+                            + e.getMessage( ), e );
+                }
+
+                boolean[] changed = new boolean[publishedDocument.getPortletCount( )];
+
+                for ( int i = 0; i < publishedDocument.getPortletCount( ); i++ )
+                {
+                    IndexManifestEntry entry = mapEntries.get( MultiRootDocumentIndexer.getPortletDocumentId(
+                            nIdDocument, publishedDocument.getIdPortlet( i ) ) );
+
+                    if ( entry == null )
+                    {
+                        // already handled
+                        continue;
+                    }
+
+                    changed[i] = ( strContentHash == null ) || !strContentHash.equals( entry.getContentHash( ) );
+
+                    if ( !changed[i] )
+                    {
+                        // same content, the index is up to date : only the date is new
+                        updateEntry( entry, entry.getRole( ), dateModification, strContentHash );
+                    }
+                }
+
+                nReindexed += queueActions( indexer, publishedDocument, changed, listActions );
+            }
+        }
+
+        return nReindexed;
+    }
+
+    /**
+     * Queues the reindexing of the changed pairs of a document : one action
+     * for the whole document if all its pairs changed, otherwise one per
+     * changed portlet
+     * @param indexer the indexer
+     * @param publishedDocument the document
+     * @param changed the changed pairs, by portlet index
+     * @param listActions the list the actions are added to
+     * @return the number of changed pairs
+     */
+    private static int queueActions( MultiRootDocumentIndexer indexer, PublishedDocument publishedDocument,
+            boolean[] changed, List<IndexerAction> listActions )
+    {
+        int nIdDocument = publishedDocument.getIdDocument( );
+        int nChanged = 0;
+
+        for ( boolean bChanged : changed )
+        {
+            if ( bChanged )
+            {
+                nChanged++;
+            }
+        }
+
+        if ( ( nChanged > 1 ) && ( nChanged == changed.length ) )
+        {
+            listActions.add( newAction( nIdDocument, indexer, IndexerAction.TASK_MODIFY, IndexationService.ALL_DOCUMENT ) );
+        }
+        else
+        {
+            for ( int i = 0; i < changed.length; i++ )
+            {
+                if ( changed[i] )
+                {
+                    listActions.add( newAction( nIdDocument, indexer, IndexerAction.TASK_MODIFY,
+                            publishedDocument.getIdPortlet( i ) ) );
+                }
+            }
+        }
+
+        return nChanged;
+    }
+
+    /**
+     * Builds an indexer action
+     * @param nIdDocument the document id
+     * @param indexer the indexer
+     * @param nIdTask the task
+     * @param nIdPortlet the portlet id, or {@link IndexationService#ALL_DOCUMENT}
+     * @return the action
+     */
+    private static IndexerAction newAction( int nIdDocument, MultiRootDocumentIndexer indexer, int nIdTask,
+            int nIdPortlet )
+    {
+        IndexerAction indexerAction = new IndexerAction( );
+        indexerAction.setIdDocument( Integer.toString( nIdDocument ) );
+        indexerAction.setIndexerName( indexer.getName( ) );
+        indexerAction.setIdTask( nIdTask );
+        indexerAction.setIdPortlet( nIdPortlet );
+
+        return indexerAction;
+    }
+
+    /**
+     * Updates a manifest entry
+     * @param entry the entry
+     * @param strRole the role
+     * @param dateModification the modification date
+     * @param strContentHash the content hash, or null if unknown
+     */
+    private static void updateEntry( IndexManifestEntry entry, String strRole, Timestamp dateModification,
+            String strContentHash )
+    {
+        entry.setRole( strRole );
+        entry.setDateModification( dateModification );
+        entry.setContentHash( strContentHash );
+        IndexManifestHome.update( entry );
+    }
+
+    /**
+     * Tells whether the entry has the given modification date
+     * @param entry the entry
+     * @param dateModification the modification date
+     * @return true if same date
+     */
+    private static boolean isSameDate( IndexManifestEntry entry, Timestamp dateModification )
+    {
+        return ( entry.getDateModification( ) != null )
+                && ( entry.getDateModification( ).getTime( ) == dateModification.getTime( ) );
+    }
+}
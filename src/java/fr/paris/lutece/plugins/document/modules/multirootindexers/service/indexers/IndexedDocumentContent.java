@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.portal.service.util.AppException;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+
+/**
+ * The part of the lucene document which depends only on the document : built
+ * once per document and shared by all the portlets it is published in.
+ */
+final class IndexedDocumentContent
+{
+    private final String _strUid;
+    private final String _strDate;
+    private final String _strContent;
+    private final String _strTitle;
+    private final String _strType;
+    private final String _strSummary;
+    private final Timestamp _dateModification;
+    private String _strContentHash;
+
+    /**
+     * Constructor
+     * @param strUid the uid
+     * @param strDate the modification date
+     * @param strContent the tag-stripped content
+     * @param strTitle the title
+     * @param strType the document type
+     * @param strSummary the summary
+     * @param dateModification the modification date of the document
+     */
+    IndexedDocumentContent( String strUid, String strDate, String strContent, String strTitle, String strType,
+            String strSummary, Timestamp dateModification )
+    {
+        _strUid = strUid;
+        _strDate = strDate;
+        _strContent = strContent;
+        _strTitle = strTitle;
+        _strType = strType;
+        _strSummary = strSummary;
+        _dateModification = dateModification;
+    }
+
+    /**
+     * Gets the uid
+     * @return the uid
+     */
+    String getUid( )
+    {
+        return _strUid;
+    }
+
+    /**
+     * Gets the modification date
+     * @return the modification date
+     */
+    String getDate( )
+    {
+        return _strDate;
+    }
+
+    /**
+     * Gets the tag-stripped content
+     * @return the tag-stripped content
+     */
+    String getContent( )
+    {
+        return _strContent;
+    }
+
+    /**
+     * Gets the title
+     * @return the title
+     */
+    String getTitle( )
+    {
+        return _strTitle;
+    }
+
+    /**
+     * Gets the document type
+     * @return the document type
+     */
+    String getType( )
+    {
+        return _strType;
+    }
+
+    /**
+     * Gets the summary
+     * @return the summary
+     */
+    String getSummary( )
+    {
+        return _strSummary;
+    }
+
+    /**
+     * Gets the modification date of the document
+     * @return the modification date
+     */
+    Timestamp getDateModification( )
+    {
+        return _dateModification;
+    }
+
+    /**
+     * Gets the hash of the indexed fields, computed on first call
+     * @return the hash, as an hexadecimal string
+     */
+    String getContentHash( )
+    {
+        if ( _strContentHash == null )
+        {
+            MessageDigest digest = ExtractedTextCache.newDigest( );
+
+            try
+            {
+                for ( String strField : new String[] { _strContent, _strTitle, _strType, _strSummary } )
+                {
+                    if ( strField != null )
+                    {
+                        digest.update( strField.getBytes( "UTF-8" ) );
+                    }
+
+                    // separates the fields, so that moving text between them changes the hash
+                    digest.update( (byte) 0 );
+                }
+            }
+            catch ( UnsupportedEncodingException e )
+            {
+                throw new AppException( e.getMessage( ), e );
+            }
+
+            _strContentHash = ExtractedTextCache.toHex( digest.digest( ) );
+        }
+
+        return _strContentHash;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+
+/**
+ * Immutable snapshot of the configuration of the document indexer. The
+ * properties are read again by {@link #refresh()}, once per indexing, and a
+ * new snapshot is published only if they have changed, so that the values
+ * derived from the configuration (compiled patterns, indexing plans) are
+ * rebuilt only after a reload of the properties.
+ */
+public final class IndexerConfig
+{
+    private static final String PROPERTY_PAGE_BASE_URL = "document.documentIndexer.baseUrl";
+    private static final String PROPERTY_SEARCH_SUFFIX = "document-multirootindexers.search.suffix";
+    private static final String PROPERTY_SEARCH_ATTRIBUTE_TITLE = "document-multirootindexers.search.attribute_title";
+    private static final String PROPERTY_NOT_INDEXED = "document-multirootindexers.document.attributes.notindexed";
+    private static final String PROPERTY_BINARY_MAX_BYTES = "document-multirootindexers.binary.maxIndexedBytes";
+    private static final String PROPERTY_NORMALIZER_ENABLED = "document-multirootindexers.htmlNormalizer.enable";
+    private static final String PROPERTY_NORMALIZER_VERIFY = "document-multirootindexers.htmlNormalizer.verify";
+    private static volatile IndexerConfig _current = read(  );
+
+    /** Raw property values, used to detect a reload */
+    private final String[] _strValues;
+    private final String _strBaseUrl;
+    private final String _strUrlSuffix;
+    private final Pattern _patternTitle;
+    private final Pattern _patternNotIndexed;
+    private final long _lBinaryMaxBytes;
+    private final boolean _bNormalizerEnabled;
+    private final boolean _bNormalizerVerify;
+
+    /**
+     * Constructor
+     * @param strValues the raw values of the properties, in the order of
+     *            {@link #read()}
+     */
+    private IndexerConfig( String[] strValues )
+    {
+        _strValues = strValues;
+        _strBaseUrl = strValues[0];
+        _strUrlSuffix = StringUtils.isNotBlank( strValues[1] ) ? strValues[1] : null;
+        _patternTitle = StringUtils.isNotBlank( strValues[2] ) ? Pattern.compile( strValues[2] ) : null;
+        _patternNotIndexed = ( strValues[3] != null ) ? Pattern.compile( strValues[3] ) : null;
+        _lBinaryMaxBytes = StringUtils.isNumeric( strValues[4] ) && StringUtils.isNotEmpty( strValues[4] )
+            ? Long.parseLong( strValues[4] ) : 0L;
+        _bNormalizerEnabled = Boolean.parseBoolean( strValues[5] );
+        _bNormalizerVerify = Boolean.parseBoolean( strValues[6] );
+    }
+
+    /**
+     * Gets the current configuration
+     * @return the current configuration
+     */
+    public static IndexerConfig getInstance(  )
+    {
+        return _current;
+    }
+
+    /**
+     * Reads the properties again and publishes a new configuration if they
+     * have changed
+     * @return the current configuration
+     */
+    public static IndexerConfig refresh(  )
+    {
+        IndexerConfig config = read(  );
+
+        if ( !Arrays.equals( config._strValues, _current._strValues ) )
+        {
+            _current = config;
+        }
+
+        return _current;
+    }
+
+    /**
+     * Reads the properties
+     * @return the configuration
+     */
+    private static IndexerConfig read(  )
+    {
+        return new IndexerConfig( new String[] { 
+                AppPropertiesService.getProperty( PROPERTY_PAGE_BASE_URL ),
+                AppPropertiesService.getProperty( PROPERTY_SEARCH_SUFFIX ),
+                AppPropertiesService.getProperty( PROPERTY_SEARCH_ATTRIBUTE_TITLE ),
+                AppPropertiesService.getProperty( PROPERTY_NOT_INDEXED ),
+                AppPropertiesService.getProperty( PROPERTY_BINARY_MAX_BYTES, "0" ),
+                AppPropertiesService.getProperty( PROPERTY_NORMALIZER_ENABLED, "true" ),
+                AppPropertiesService.getProperty( PROPERTY_NORMALIZER_VERIFY, "false" )
+            } );
+    }
+
+    /**
+     * Gets the base url of the documents
+     * @return the base url
+     */
+    public String getBaseUrl(  )
+    {
+        return _strBaseUrl;
+    }
+
+    /**
+     * Gets the suffix added to the displayed urls
+     * @return the suffix, or null if none
+     */
+    public String getUrlSuffix(  )
+    {
+        return _strUrlSuffix;
+    }
+
+    /**
+     * Gets the pattern of the code of the attribute used as title
+     * @return the pattern, or null if the document title is used
+     */
+    public Pattern getTitlePattern(  )
+    {
+        return _patternTitle;
+    }
+
+    /**
+     * Gets the pattern of the codes of the attributes never indexed
+     * @return the pattern, or null if none
+     */
+    public Pattern getNotIndexedPattern(  )
+    {
+        return _patternNotIndexed;
+    }
+
+    /**
+     * Gets the maximum number of bytes read from a binary attribute
+     * @return the maximum, 0 if no limit
+     */
+    public long getBinaryMaxBytes(  )
+    {
+        return _lBinaryMaxBytes;
+    }
+
+    /**
+     * Tells whether the {@link HtmlTextNormalizer} is used
+     * @return true if used
+     */
+    public boolean isNormalizerEnabled(  )
+    {
+        return _bNormalizerEnabled;
+    }
+
+    /**
+     * Tells whether the normalizer output is checked against the Tika output
+     * @return true if checked
+     */
+    public boolean isNormalizerVerify(  )
+    {
+        return _bNormalizerVerify;
+    }
+}
@@ -34,10 +34,13 @@
 package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
 
 import fr.paris.lutece.plugins.document.business.Document;
-import fr.paris.lutece.plugins.document.business.DocumentHome;
 import fr.paris.lutece.plugins.document.business.DocumentTypeHome;
 import fr.paris.lutece.plugins.document.business.attributes.DocumentAttribute;
 import fr.paris.lutece.plugins.document.business.portlet.DocumentListPortletHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.document.MultiRootDocumentHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingJob;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingMetrics;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.page.PageTreeCacheService;
 import fr.paris.lutece.plugins.document.modules.multirootindexers.util.PageTreeUtils;
 import fr.paris.lutece.plugins.document.service.publishing.PublishingService;
 import fr.paris.lutece.plugins.document.service.search.DocumentIndexer;
@@ -46,8 +49,7 @@ import fr.paris.lutece.plugins.lucene.service.indexer.IFileIndexerFactory;
 import fr.paris.lutece.portal.business.page.Page;
 import fr.paris.lutece.portal.business.page.PageHome;
 import fr.paris.lutece.portal.business.portlet.Portlet;
-import fr.paris.lutece.portal.business.portlet.PortletHome;
-import fr.paris.lutece.portal.service.search.IndexationService;
+import fr.paris.lutece.portal.service.portal.PortalService;
 import fr.paris.lutece.portal.service.search.SearchItem;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppException;
@@ -58,11 +60,15 @@ import fr.paris.lutece.util.url.UrlItem;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Field;
@@ -93,62 +99,328 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
     public static final String SHORT_NAME = "dcm";
     private static final String INDEXER_DESCRIPTION = "Indexer service for documents";
     private static final String INDEXER_VERSION = "1.0.0";
-    private static final String PROPERTY_PAGE_BASE_URL = "document.documentIndexer.baseUrl";
     private static final String PROPERTY_INDEXER_ENABLE = "document.documentIndexer.enable";
     private static final String PARAMETER_DOCUMENT_ID = "document_id";
     private static final String PARAMETER_PORTLET_ID = "portlet_id";
     private static final String JSP_PAGE_ADVANCED_SEARCH = "jsp/site/Portal.jsp?page=advanced_search";
-    private static final String PROPERTY_SEARCH_ATTRIBUTE_TITLE = "document-multirootindexers.search.attribute_title";
-    private static final String PROPERTY_SEARCH_SUFFIX = "document-multirootindexers.search.suffix";
+    private static final String UID_SUFFIX = "_" + DocumentIndexer.SHORT_NAME;
+    private static final String CONTENT_TYPE_HTML_UTF8 = "text/html; charset=UTF-8";
+    private static final String CHARSET_UTF8 = "UTF-8";
+    private static final int ABBREVIATE_LENGTH = 200;
+
+    // Field types, shared by all the documents
+    private static final FieldType FIELD_TYPE_STORED = new FieldType( StringField.TYPE_STORED );
+    private static final FieldType FIELD_TYPE_NOT_INDEXED = new FieldType( StringField.TYPE_STORED );
+    private static final FieldType FIELD_TYPE_NOT_STORED = new FieldType( StringField.TYPE_NOT_STORED );
+
+    static
+    {
+        FIELD_TYPE_STORED.setOmitNorms( false );
+        FIELD_TYPE_STORED.freeze( );
+
+        FIELD_TYPE_NOT_INDEXED.setIndexed( false );
+        FIELD_TYPE_NOT_INDEXED.setTokenized( false );
+        FIELD_TYPE_NOT_INDEXED.setOmitNorms( false );
+        FIELD_TYPE_NOT_INDEXED.freeze( );
+
+        FIELD_TYPE_NOT_STORED.setOmitNorms( false );
+        FIELD_TYPE_NOT_STORED.setTokenized( true );
+        FIELD_TYPE_NOT_STORED.freeze( );
+    }
 
     /**
      * Index all lucene documents in the site.
+     * Uses the staged {@link DocumentIndexingPipeline} unless it has been
+     * disabled, in which case documents are indexed sequentially.
+     * Rebuilds the index manifest if enabled, see {@link IndexManifestService}.
+     * The additional roots are built concurrently in their own indexes, see
+     * {@link RootIndexingService}. The progress is exposed by an
+     * {@link IndexingJob} MBean, through which the indexing can be paused. It
+     * cannot be cancelled, as the core would commit a truncated index.
      * @throws IOException i/o exception
      * @throws InterruptedException interrupted exception
      */
     public void indexDocuments( ) throws IOException, InterruptedException
     {
-        String strBaseUrl = AppPropertiesService.getProperty( PROPERTY_PAGE_BASE_URL );
-        Page page;
-        Set<Integer> listIdsPages = PageTreeUtils.getListPagesIdsFromRoot( );
+        IndexerConfig.refresh( );
+        AttributeIndexingPlanService.getInstance( ).reset( );
+        // pages may have been created or moved on another node
+        PageTreeCacheService.getInstance( ).invalidate( );
+        RootIndexingService.startAdditionalRoots( );
+
+        IndexManifestRecorder recorder = IndexManifestService.isEnabled( ) ? new IndexManifestRecorder( ) : null;
+
+        // the core commits the index even if the indexing fails : pause only
+        IndexingJob job = IndexingJob.start( getName( ), false );
+
+        try
+        {
+            indexRoot( PortalService.getRootPageId( ), CoreIndexTarget.getInstance( ), recorder, job );
+        }
+        finally
+        {
+            job.finish( );
+        }
+
+        if ( recorder != null )
+        {
+            recorder.flush( );
+        }
+
+        AppLogService.info( "Indexer : " + getName( ) + " - metrics :\n"
+                + IndexingMetrics.getInstance( ).getReport( ) );
+    }
+
+    /**
+     * Index the lucene documents published under a root page. The documents
+     * are written by batches, see {@link BatchingIndexTarget}.
+     * @param nRootId the root page id
+     * @param target the index to write the documents to
+     * @param recorder the manifest recorder, or null if the manifest is
+     *            disabled
+     * @param job the progress of the indexing
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception, or job cancelled
+     */
+    void indexRoot( int nRootId, IndexTarget target, IndexManifestRecorder recorder, IndexingJob job )
+            throws IOException, InterruptedException
+    {
+        BatchingIndexTarget batchingTarget = new BatchingIndexTarget( target );
 
-        for ( Portlet portlet : PortletHome.findByType( DocumentListPortletHome.getInstance( ).getPortletTypeId( ) ) )
+        try
         {
-            if ( listIdsPages.contains( portlet.getPageId( ) ) )
+            if ( DocumentIndexingPipeline.isEnabled( ) )
             {
-                page = PageHome.getPage( portlet.getPageId( ) );
+                new DocumentIndexingPipeline( this, nRootId, batchingTarget, recorder, job ).run( );
+            }
+            else
+            {
+                indexDocumentsSequentially( nRootId, batchingTarget, recorder, job );
+            }
 
-                for ( Document d : PublishingService.getInstance( ).getPublishedDocumentsByPortletId( portlet.getId( ) ) )
-                {
-                    Document document = DocumentHome.findByPrimaryKey( d.getId( ) );
+            batchingTarget.close( );
+        }
+        finally
+        {
+            batchingTarget.abort( );
+        }
+    }
+
+    /**
+     * Index the lucene documents published under a root page, one at a time,
+     * on the calling thread.
+     * @param nRootId the root page id
+     * @param target the index to write the documents to
+     * @param recorder the manifest recorder, or null if the manifest is
+     *            disabled
+     * @param job the progress of the indexing
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception, or job cancelled
+     */
+    private void indexDocumentsSequentially( int nRootId, IndexTarget target, IndexManifestRecorder recorder,
+            IndexingJob job ) throws IOException, InterruptedException
+    {
+        String strBaseUrl = IndexerConfig.getInstance( ).getBaseUrl( );
+        List<PublishedDocument> listPublishedDocuments = new ArrayList<PublishedDocument>(
+                discoverPublishedDocuments( nRootId ) );
+        job.addToTotal( listPublishedDocuments.size( ) );
+        int nBatchSize = MultiRootDocumentHome.getBatchSize( );
 
-                    // Reload the full object to get all its searchable attributes
-                    UrlItem url = new UrlItem( strBaseUrl );
-                    url.addParameter( PARAMETER_DOCUMENT_ID, document.getId( ) );
-                    url.addParameter( PARAMETER_PORTLET_ID, portlet.getId( ) );
+        for ( int nStart = 0; nStart < listPublishedDocuments.size( ); nStart += nBatchSize )
+        {
+            List<PublishedDocument> listBatch = listPublishedDocuments.subList( nStart,
+                    Math.min( nStart + nBatchSize, listPublishedDocuments.size( ) ) );
+            List<Integer> listIdsDocuments = new ArrayList<Integer>( listBatch.size( ) );
 
-                    String strPortletDocumentId = document.getId( ) + "_" + SHORT_NAME + "&" + portlet.getId( );
-                    org.apache.lucene.document.Document doc = null;
+            for ( PublishedDocument publishedDocument : listBatch )
+            {
+                listIdsDocuments.add( publishedDocument.getIdDocument( ) );
+            }
 
-                    try
-                    {
-                        doc = getDocument( document, url.getUrl( ), page.getRole( ), strPortletDocumentId );
-                    }
-                    catch ( Exception e )
-                    {
-                        AppLogService.error( "Indexer : " + getName( ) + " - ERROR (document ID : " + document.getId( )
-                                + ", portlet ID : " + portlet.getId( ) + ") : " + e.getMessage( ), e );
-                    }
+            // Reload the full objects to get all their searchable attributes
+            long lStart = System.nanoTime( );
+            Map<Integer, Document> mapDocuments = MultiRootDocumentHome.findByPrimaryKeys( listIdsDocuments );
+            IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_FETCH, lStart );
+
+            for ( PublishedDocument publishedDocument : listBatch )
+            {
+                job.checkpoint( );
+                job.setCurrent( publishedDocument.getDescription( ) );
 
-                    if ( doc != null )
+                Document document = mapDocuments.get( publishedDocument.getIdDocument( ) );
+                IndexedDocumentContent content = null;
+
+                try
+                {
+                    if ( document == null )
                     {
-                        IndexationService.write( doc );
+                        throw new AppException( "Document not found" );
                     }
+
+                    content = getIndexedContent( document );
+                }
+                catch ( Exception e )
+                {
+                    logIndexingError( publishedDocument, e );
+                    job.itemDone( );
+
+                    continue;
+                }
+
+                List<org.apache.lucene.document.Document> listDocs = buildDocuments( publishedDocument, content,
+                        strBaseUrl );
+
+                for ( org.apache.lucene.document.Document doc : listDocs )
+                {
+                    target.write( doc );
+                }
+
+                IndexingMetrics.getInstance( ).countDocument( );
+                job.itemDone( );
+
+                if ( recorder != null )
+                {
+                    recorder.record( publishedDocument.getIdDocument( ), content, listDocs );
                 }
             }
         }
     }
 
+    /**
+     * Finds the documents published in the document list portlets of the
+     * pages under the portal root page, with the portlets they are published
+     * in.
+     * @return the published documents, in discovery order
+     */
+    Collection<PublishedDocument> discoverPublishedDocuments( )
+    {
+        return discoverPublishedDocuments( PortalService.getRootPageId( ) );
+    }
+
+    /**
+     * Finds the documents published in the document list portlets of the
+     * pages under a root page, with the portlets they are published in. The
+     * (document, portlet, role) tuples are read with two set-based queries,
+     * filtered by the database on the pages of the subtree : the portlets
+     * with the roles of their pages, then the documents published in these
+     * portlets (by batches of ids, see {@link MultiRootDocumentHome}).
+     * @param nRootId the root page id
+     * @return the published documents, in discovery order
+     */
+    Collection<PublishedDocument> discoverPublishedDocuments( int nRootId )
+    {
+        long lStart = System.nanoTime( );
+        String strIdPortletType = DocumentListPortletHome.getInstance( ).getPortletTypeId( );
+        Map<Integer, String> mapRoles = MultiRootDocumentHome.findPortletRoles( strIdPortletType,
+                PageTreeUtils.getListPagesIdsFromRoot( nRootId ) );
+        Map<Integer, List<Integer>> mapPublications = MultiRootDocumentHome.findPublications( mapRoles.keySet( ) );
+        List<PublishedDocument> listPublishedDocuments = new ArrayList<PublishedDocument>( mapPublications.size( ) );
+
+        for ( Map.Entry<Integer, List<Integer>> entry : mapPublications.entrySet( ) )
+        {
+            PublishedDocument publishedDocument = new PublishedDocument( entry.getKey( ) );
+
+            for ( Integer nIdPortlet : entry.getValue( ) )
+            {
+                publishedDocument.addPortlet( nIdPortlet, mapRoles.get( nIdPortlet ) );
+            }
+
+            listPublishedDocuments.add( publishedDocument );
+        }
+
+        IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_DISCOVERY, lStart );
+
+        return listPublishedDocuments;
+    }
+
+    /**
+     * Builds the lucene documents of a document for all the portlets it is
+     * published in. An error on one portlet is logged and does not prevent
+     * the others from being built.
+     * @param publishedDocument the document and its portlets
+     * @param content the content of the document
+     * @param strBaseUrl the base url of the documents
+     * @return the lucene documents
+     */
+    List<org.apache.lucene.document.Document> buildDocuments( PublishedDocument publishedDocument,
+            IndexedDocumentContent content, String strBaseUrl )
+    {
+        int nIdDocument = publishedDocument.getIdDocument( );
+        List<org.apache.lucene.document.Document> listDocs = new ArrayList<org.apache.lucene.document.Document>(
+                publishedDocument.getPortletCount( ) );
+
+        for ( int i = 0; i < publishedDocument.getPortletCount( ); i++ )
+        {
+            int nIdPortlet = publishedDocument.getIdPortlet( i );
+
+            try
+            {
+                listDocs.add( buildDocument( content, getDocumentUrl( strBaseUrl, nIdDocument, nIdPortlet ),
+                        publishedDocument.getRole( i ), getPortletDocumentId( nIdDocument, nIdPortlet ) ) );
+            }
+            catch ( Exception e )
+            {
+                logIndexingError( nIdDocument, nIdPortlet, e );
+            }
+        }
+
+        return listDocs;
+    }
+
+    /**
+     * Builds the url of a document displayed in a portlet
+     * @param strBaseUrl the base url of the documents
+     * @param nIdDocument the document id
+     * @param nIdPortlet the portlet id
+     * @return the url
+     */
+    static String getDocumentUrl( String strBaseUrl, int nIdDocument, int nIdPortlet )
+    {
+        UrlItem url = new UrlItem( strBaseUrl );
+        url.addParameter( PARAMETER_DOCUMENT_ID, nIdDocument );
+        url.addParameter( PARAMETER_PORTLET_ID, nIdPortlet );
+
+        return url.getUrl( );
+    }
+
+    /**
+     * Builds the document id concatened to the portlet id
+     * @param nIdDocument the document id
+     * @param nIdPortlet the portlet id
+     * @return the portlet document id
+     */
+    static String getPortletDocumentId( int nIdDocument, int nIdPortlet )
+    {
+        return nIdDocument + "_" + SHORT_NAME + "&" + nIdPortlet;
+    }
+
+    /**
+     * Logs an error raised while indexing a document published in a portlet
+     * @param nIdDocument the document id
+     * @param nIdPortlet the portlet id
+     * @param e the error
+     */
+    void logIndexingError( int nIdDocument, int nIdPortlet, Throwable e )
+    {
+        IndexingMetrics.getInstance( ).countError( e );
+        AppLogService.error( "Indexer : " + getName( ) + " - ERROR (document ID : " + nIdDocument + ", portlet ID : "
+                + nIdPortlet + ") : " + e.getMessage( ), e );
+    }
+
+    /**
+     * Logs an error raised while indexing a document, for each portlet it is
+     * published in
+     * @param publishedDocument the document and its portlets
+     * @param e the error
+     */
+    void logIndexingError( PublishedDocument publishedDocument, Throwable e )
+    {
+        for ( int i = 0; i < publishedDocument.getPortletCount( ); i++ )
+        {
+            logIndexingError( publishedDocument.getIdDocument( ), publishedDocument.getIdPortlet( i ), e );
+        }
+    }
+
     /**
      * Returns a collection of lucene documents with the same id
      * @param strIdDocument the document id
@@ -161,28 +433,37 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
     {
         List<org.apache.lucene.document.Document> listDocs = new ArrayList<org.apache.lucene.document.Document>( );
         int nIdDocument = Integer.parseInt( strIdDocument );
-        Document document = DocumentHome.findByPrimaryKey( nIdDocument );
+        Document document = MultiRootDocumentHome.findByPrimaryKey( nIdDocument );
         Iterator<Portlet> it = PublishingService.getInstance( )
                 .getPortletsByDocumentId( Integer.toString( nIdDocument ) ).iterator( );
-        String strBaseUrl = AppPropertiesService.getProperty( PROPERTY_PAGE_BASE_URL );
+        String strBaseUrl = IndexerConfig.refresh( ).getBaseUrl( );
         Page page;
+        IndexedDocumentContent content = null;
 
         while ( it.hasNext( ) )
         {
             Portlet portlet = it.next( );
-            UrlItem url = new UrlItem( strBaseUrl );
-            url.addParameter( PARAMETER_DOCUMENT_ID, nIdDocument );
-            url.addParameter( PARAMETER_PORTLET_ID, portlet.getId( ) );
-
-            String strPortletDocumentId = nIdDocument + "_" + SHORT_NAME + "&" + portlet.getId( );
+            String strPortletDocumentId = getPortletDocumentId( nIdDocument, portlet.getId( ) );
 
             page = PageHome.getPage( portlet.getPageId( ) );
 
-            org.apache.lucene.document.Document doc = getDocument( document, url.getUrl( ), page.getRole( ),
+            // the content is built once for all the portlets
+            if ( content == null )
+            {
+                content = getIndexedContent( document );
+            }
+
+            org.apache.lucene.document.Document doc = buildDocument( content,
+                    getDocumentUrl( strBaseUrl, nIdDocument, portlet.getId( ) ), page.getRole( ),
                     strPortletDocumentId );
             listDocs.add( doc );
         }
 
+        if ( ( content != null ) && IndexManifestService.isEnabled( ) )
+        {
+            IndexManifestService.recordIndexed( nIdDocument, content, listDocs );
+        }
+
         return listDocs;
     }
 
@@ -241,108 +522,190 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
     public static org.apache.lucene.document.Document getDocument( Document document, String strUrl, String strRole,
             String strPortletDocumentId ) throws IOException, InterruptedException
     {
-        // make a new, empty document
-        org.apache.lucene.document.Document doc = new org.apache.lucene.document.Document( );
-
-        // Add the url as a field named "url".  Use an UnIndexed field, so
-        // that the url is just stored with the document, but is not searchable.
-        String strDisplayedUrl = strUrl;
-        String strUrlSuffix = AppPropertiesService.getProperty( PROPERTY_SEARCH_SUFFIX );
+        return buildDocument( getIndexedContent( document ), strUrl, strRole, strPortletDocumentId );
+    }
 
-        FieldType ft = new FieldType( StringField.TYPE_STORED );
-        ft.setOmitNorms( false );
+    /**
+     * Builds the part of the lucene document which depends only on the
+     * document : content, title, date, type and summary.
+     * @param document the document to index
+     * @return the content
+     * @throws IOException The IO Exception
+     */
+    static IndexedDocumentContent getIndexedContent( Document document ) throws IOException
+    {
+        // Add the last modified date of the file a field named "modified".
+        String strDate = DateTools.dateToString( document.getDateModification( ), DateTools.Resolution.DAY );
 
-        FieldType ftNo = new FieldType( StringField.TYPE_STORED );
-        ftNo.setIndexed( false );
-        ftNo.setTokenized( false );
-        ftNo.setOmitNorms( false );
+        // Use the title attribute, if any
+        String strTitle = null;
+        int nTitleIndex = AttributeIndexingPlanService.getInstance( ).getPlan( document ).getTitleIndex( );
 
-        FieldType ftNotStored = new FieldType( StringField.TYPE_NOT_STORED );
-        ftNotStored.setOmitNorms( false );
-        ftNotStored.setTokenized( true );
+        if ( nTitleIndex >= 0 )
+        {
+            strTitle = document.getAttributes( ).get( nTitleIndex ).getTextValue( );
+        }
 
-        if ( StringUtils.isNotBlank( strUrlSuffix ) )
+        if ( strTitle == null )
         {
-            strDisplayedUrl += strUrlSuffix;
+            strTitle = document.getTitle( );
         }
 
-        doc.add( new Field( SearchItem.FIELD_URL, strDisplayedUrl, ft ) );
+        IndexingMetrics metrics = IndexingMetrics.getInstance( );
+        long lStart = System.nanoTime( );
+        String strContentToIndex = getContentToIndex( document );
+        metrics.record( IndexingMetrics.STAGE_CONTENT, lStart );
+        lStart = System.nanoTime( );
+
+        String strContent = parseContent( strContentToIndex );
+        metrics.record( IndexingMetrics.STAGE_PARSE, lStart );
+
+        return new IndexedDocumentContent( document.getId( ) + UID_SUFFIX, strDate, strContent, strTitle,
+                document.getType( ), document.getSummary( ), document.getDateModification( ) );
+    }
+
+    /**
+     * Builds the lucene document of a document published in a portlet.
+     * @param content the content of the document, see
+     *            {@link #getIndexedContent(Document)}
+     * @param strUrl the url of the documents
+     * @param strRole the lutece role of the page associate to the document
+     * @param strPortletDocumentId the document id concatened to the id portlet
+     *            with a & in the middle
+     * @return the built Document
+     */
+    static org.apache.lucene.document.Document buildDocument( IndexedDocumentContent content, String strUrl,
+            String strRole, String strPortletDocumentId )
+    {
+        long lStart = System.nanoTime( );
+
+        // make a new, empty document
+        org.apache.lucene.document.Document doc = new org.apache.lucene.document.Document( );
+
+        // Add the url as a field named "url".  Use an UnIndexed field, so
+        // that the url is just stored with the document, but is not searchable.
+        String strUrlSuffix = IndexerConfig.getInstance( ).getUrlSuffix( );
+        String strDisplayedUrl = ( strUrlSuffix == null ) ? strUrl : strUrl.concat( strUrlSuffix );
+
+        doc.add( new Field( SearchItem.FIELD_URL, strDisplayedUrl, FIELD_TYPE_STORED ) );
 
         // Add the PortletDocumentId as a field named "document_portlet_id".  
-        doc.add( new Field( SearchItem.FIELD_DOCUMENT_PORTLET_ID, strPortletDocumentId, ft ) );
+        doc.add( new Field( SearchItem.FIELD_DOCUMENT_PORTLET_ID, strPortletDocumentId, FIELD_TYPE_STORED ) );
 
         // Add the last modified date of the file a field named "modified".
         // Use a field that is indexed (i.e. searchable), but don't tokenize
         // the field into words.
-        String strDate = DateTools.dateToString( document.getDateModification( ), DateTools.Resolution.DAY );
-        doc.add( new Field( SearchItem.FIELD_DATE, strDate, ft ) );
+        doc.add( new Field( SearchItem.FIELD_DATE, content.getDate( ), FIELD_TYPE_STORED ) );
 
         // Add the uid as a field, so that index can be incrementally maintained.
         // This field is not stored with document, it is indexed, but it is not
         // tokenized prior to indexing.
-        String strIdDocument = String.valueOf( document.getId( ) );
-        doc.add( new Field( SearchItem.FIELD_UID, strIdDocument + "_" + DocumentIndexer.SHORT_NAME, ft ) );
-
-        String strContentToIndex = getContentToIndex( document );
-        ContentHandler handler = new BodyContentHandler( );
-        Metadata metadata = new Metadata( );
-        try
-        {
-            new HtmlParser( ).parse( new ByteArrayInputStream( strContentToIndex.getBytes( ) ), handler, metadata,
-                    new ParseContext( ) );
-        }
-        catch ( SAXException e )
-        {
-            throw new AppException( "Error during page parsing." );
-        }
-        catch ( TikaException e )
-        {
-            throw new AppException( "Error during page parsing." );
-        }
-
-        //the content of the article is recovered in the parser because this one
-        //had replaced the encoded caracters (as &eacute;) by the corresponding special caracter (as ?)
-        StringBuilder sb = new StringBuilder( handler.toString( ) );
+        doc.add( new Field( SearchItem.FIELD_UID, content.getUid( ), FIELD_TYPE_STORED ) );
 
         // Add the tag-stripped contents as a Reader-valued Text field so it will
         // get tokenized and indexed.
-        doc.add( new Field( SearchItem.FIELD_CONTENTS, sb.toString( ), TextField.TYPE_NOT_STORED ) );
+        doc.add( new Field( SearchItem.FIELD_CONTENTS, content.getContent( ), TextField.TYPE_NOT_STORED ) );
 
         // Add the title as a separate Text field, so that it can be searched
         // separately.
-        String strRegexpTitle = AppPropertiesService.getProperty( PROPERTY_SEARCH_ATTRIBUTE_TITLE );
+        doc.add( new Field( SearchItem.FIELD_TITLE, content.getTitle( ), FIELD_TYPE_NOT_INDEXED ) );
 
-        String strTitle = null;
+        doc.add( new Field( SearchItem.FIELD_TYPE, content.getType( ), FIELD_TYPE_STORED ) );
+
+        doc.add( new Field( SearchItem.FIELD_ROLE, strRole, FIELD_TYPE_STORED ) );
+
+        // add metadata (mapped to summary)
+        doc.add( new Field( SearchItem.FIELD_METADATA, content.getSummary( ), FIELD_TYPE_NOT_STORED ) );
+
+        IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_BUILD, lStart );
+
+        // return the document
+        return doc;
+    }
+
+    /**
+     * Strips the tags of the content and replaces the encoded characters.
+     * Uses the {@link HtmlTextNormalizer}, and Tika only if the normalizer is
+     * disabled or if the content is malformed.
+     * @param strContentToIndex the content, see
+     *            {@link #getContentToIndex(Document)}
+     * @return the parsed content
+     * @throws IOException The IO Exception
+     */
+    static String parseContent( String strContentToIndex ) throws IOException
+    {
+        IndexerConfig config = IndexerConfig.getInstance( );
 
-        if ( StringUtils.isNotBlank( strRegexpTitle ) )
+        if ( !config.isNormalizerEnabled( ) )
         {
-            for ( DocumentAttribute attribute : document.getAttributes( ) )
-            {
-                AppLogService.error( attribute.getCode( ) );
+            return parseContentWithTika( strContentToIndex );
+        }
 
-                if ( attribute.getCode( ).matches( strRegexpTitle ) )
-                {
-                    strTitle = attribute.getTextValue( );
-                }
-            }
+        String strContent = HtmlTextNormalizer.normalize( strContentToIndex );
+
+        if ( strContent == null )
+        {
+            return parseContentWithTika( strContentToIndex );
         }
 
-        if ( strTitle == null )
+        if ( config.isNormalizerVerify( ) )
         {
-            strTitle = document.getTitle( );
+            String strTikaContent = parseContentWithTika( strContentToIndex );
+
+            if ( !normalizeWhitespaces( strContent ).equals( normalizeWhitespaces( strTikaContent ) ) )
+            {
+                AppLogService.info( "Indexer : HTML normalizer and Tika outputs differ, Tika output used for : "
+                        + StringUtils.abbreviate( strContentToIndex, ABBREVIATE_LENGTH ) );
+
+                return strTikaContent;
+            }
         }
 
-        doc.add( new Field( SearchItem.FIELD_TITLE, strTitle, ftNo ) );
+        return strContent;
+    }
 
-        doc.add( new Field( SearchItem.FIELD_TYPE, document.getType( ), ft ) );
+    /**
+     * Collapses the whitespaces, which are not significant for the indexing
+     * @param strContent the content
+     * @return the content with single spaces
+     */
+    private static String normalizeWhitespaces( String strContent )
+    {
+        return StringUtils.join( StringUtils.split( strContent ), ' ' );
+    }
 
-        doc.add( new Field( SearchItem.FIELD_ROLE, strRole, ft ) );
+    /**
+     * Strips the tags of the content and replaces the encoded characters with
+     * the Tika HtmlParser.
+     * @param strContentToIndex the content
+     * @return the parsed content
+     * @throws IOException The IO Exception
+     */
+    private static String parseContentWithTika( String strContentToIndex ) throws IOException
+    {
+        ContentHandler handler = new BodyContentHandler( );
+        Metadata metadata = new Metadata( );
 
-        // add metadata (mapped to summary)
-        doc.add( new Field( SearchItem.FIELD_METADATA, document.getSummary( ), ftNotStored ) );
+        // give the charset to the parser, rather than letting it guess the one of the platform
+        metadata.set( Metadata.CONTENT_TYPE, CONTENT_TYPE_HTML_UTF8 );
 
-        // return the document
-        return doc;
+        try
+        {
+            new HtmlParser( ).parse( new ByteArrayInputStream( strContentToIndex.getBytes( CHARSET_UTF8 ) ), handler,
+                    metadata, new ParseContext( ) );
+        }
+        catch ( SAXException e )
+        {
+            throw new AppException( "Error during page parsing." );
+        }
+        catch ( TikaException e )
+        {
+            throw new AppException( "Error during page parsing." );
+        }
+
+        //the content of the article is recovered in the parser because this one
+        //had replaced the encoded caracters (as &eacute;) by the corresponding special caracter (as ?)
+        return handler.toString( );
     }
 
     /**
@@ -350,15 +713,21 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
      * @param document the document to index
      * @return the content
      */
-    private static String getContentToIndex( Document document )
+    static String getContentToIndex( Document document )
     {
         StringBuilder sbContentToIndex = new StringBuilder( );
         sbContentToIndex.append( document.getTitle( ) );
 
-        for ( DocumentAttribute attribute : document.getAttributes( ) )
+        List<DocumentAttribute> listAttributes = document.getAttributes( );
+        AttributeIndexingPlan plan = AttributeIndexingPlanService.getInstance( ).getPlan( document );
+        IFileIndexerFactory factoryIndexer = null;
+
+        for ( int i = 0; i < listAttributes.size( ); i++ )
         {
-            // check prefix
-            if ( attribute.isSearchable( ) && !attribute.getCode( ).matches( PageTreeUtils.NOT_INDEXED_REGEXP ) )
+            DocumentAttribute attribute = listAttributes.get( i );
+
+            // searchable and prefix checked by the plan
+            if ( plan.isIndexed( i ) )
             {
                 if ( !attribute.isBinary( ) )
                 {
@@ -370,20 +739,20 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
                 {
                     // Binary file attribute
                     // Gets indexer depending on the ContentType (ie: "application/pdf" should use a PDF indexer)
-                    IFileIndexerFactory factoryIndexer = (IFileIndexerFactory) SpringContextService
-                            .getBean( IFileIndexerFactory.BEAN_FILE_INDEXER_FACTORY );
+                    if ( factoryIndexer == null )
+                    {
+                        factoryIndexer = (IFileIndexerFactory) SpringContextService
+                                .getBean( IFileIndexerFactory.BEAN_FILE_INDEXER_FACTORY );
+                    }
+
                     IFileIndexer indexer = factoryIndexer.getIndexer( attribute.getValueContentType( ) );
 
                     if ( indexer != null )
                     {
                         try
                         {
-                            AppLogService.error( "Document ID : " + document.getId( ) );
-
-                            ByteArrayInputStream bais = new ByteArrayInputStream( attribute.getBinaryValue( ) );
                             sbContentToIndex.append( " " );
-                            sbContentToIndex.append( indexer.getContentToIndex( bais ) );
-                            bais.close( );
+                            sbContentToIndex.append( getBinaryContentToIndex( indexer, document, attribute ) );
                         }
                         catch ( IOException e )
                         {
@@ -401,6 +770,135 @@ public class MultiRootDocumentIndexer extends DocumentIndexer
         return sbContentToIndex.toString( );
     }
 
+    /**
+     * Extracts the text of a binary attribute, or gets it from the
+     * {@link ExtractedTextCache} if the attribute has already been extracted
+     * since the last modification of the document. The binary value is
+     * streamed from the database, so at most
+     * {@link IndexerConfig#getBinaryMaxBytes()} bytes are read and the
+     * attachment is never held in memory as a whole.
+     * @param indexer the file indexer
+     * @param document the document
+     * @param attribute the binary attribute
+     * @return the extracted text
+     * @throws IOException if an error occurs
+     */
+    private static String getBinaryContentToIndex( IFileIndexer indexer, Document document,
+            DocumentAttribute attribute ) throws IOException
+    {
+        long lStart = System.nanoTime( );
+
+        try
+        {
+            return extractBinaryContent( indexer, document, attribute );
+        }
+        finally
+        {
+            IndexingMetrics.getInstance( ).record( IndexingMetrics.STAGE_ATTACHMENT, lStart );
+        }
+    }
+
+    /**
+     * Extracts the text of a binary attribute, see
+     * {@link #getBinaryContentToIndex(IFileIndexer, Document, DocumentAttribute)}.
+     * The cache is looked up by attribute, without reading the binary value.
+     * On a miss the text is extracted and cached under the attribute key.
+     * @param indexer the file indexer
+     * @param document the document
+     * @param attribute the binary attribute
+     * @return the extracted text
+     * @throws IOException if an error occurs
+     */
+    private static String extractBinaryContent( IFileIndexer indexer, Document document, DocumentAttribute attribute )
+            throws IOException
+    {
+        ExtractedTextCache cache = ExtractedTextCache.getInstance( );
+        String strAttributeKey = null;
+
+        if ( cache.isEnabled( ) && ( document.getDateModification( ) != null ) )
+        {
+            strAttributeKey = ExtractedTextCache.getAttributeKey( document.getId( ), attribute.getId( ),
+                    document.getDateModification( ) );
+
+            String strText = cache.get( strAttributeKey );
+
+            if ( strText != null )
+            {
+                return strText;
+            }
+        }
+
+        InputStream in = openBinaryValue( document.getId( ), attribute );
+
+        if ( in == null )
+        {
+            return StringUtils.EMPTY;
+        }
+
+        String strText;
+
+        try
+        {
+            strText = indexer.getContentToIndex( in );
+        }
+        finally
+        {
+            in.close( );
+        }
+
+        if ( strAttributeKey != null )
+        {
+            cache.put( strAttributeKey, strText );
+        }
+
+        return strText;
+    }
+
+    /**
+     * Opens a stream over a binary value, limited to
+     * {@link IndexerConfig#getBinaryMaxBytes()} bytes. The bytes read are
+     * counted in the {@link IndexingMetrics} when the stream is closed.
+     * @param nIdDocument the document id
+     * @param attribute the binary attribute
+     * @return the stream, or null if the attribute has no binary value
+     */
+    private static InputStream openBinaryValue( int nIdDocument, DocumentAttribute attribute )
+    {
+        InputStream in;
+
+        if ( attribute.getBinaryValue( ) != null )
+        {
+            in = new ByteArrayInputStream( attribute.getBinaryValue( ) );
+        }
+        else
+        {
+            in = MultiRootDocumentHome.openBinaryValue( nIdDocument, attribute.getId( ) );
+        }
+
+        long lMaxBytes = IndexerConfig.getInstance( ).getBinaryMaxBytes( );
+
+        if ( ( in != null ) && ( lMaxBytes > 0 ) )
+        {
+            BoundedInputStream bounded = new BoundedInputStream( in, lMaxBytes );
+            bounded.setPropagateClose( true );
+            in = bounded;
+        }
+
+        if ( in == null )
+        {
+            return null;
+        }
+
+        return new CountingInputStream( in )
+            {
+                public void close( ) throws IOException
+                {
+                    IndexingMetrics.getInstance( ).countAttachmentBytes( getByteCount( ) );
+                    super.close( );
+                }
+            };
+    }
+
     /**
      * {@inheritDoc}
      */
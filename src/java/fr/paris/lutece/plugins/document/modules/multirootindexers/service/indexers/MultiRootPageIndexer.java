@@ -33,9 +33,14 @@
  */
 package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
 
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingJob;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingMetrics;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.page.PageTreeCacheService;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.util.IndexingThreadFactory;
 import fr.paris.lutece.plugins.document.modules.multirootindexers.util.PageTreeUtils;
 import fr.paris.lutece.portal.business.page.Page;
 import fr.paris.lutece.portal.service.message.SiteMessageException;
+import fr.paris.lutece.portal.service.portal.PortalService;
 import fr.paris.lutece.portal.service.search.IndexationService;
 import fr.paris.lutece.portal.service.search.PageIndexer;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
@@ -45,48 +50,343 @@ import org.apache.lucene.document.Document;
 
 import java.io.IOException;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
- * Indexes pages from lutece.page.root.
+ * Indexes pages from lutece.page.root, or from the root page of an additional
+ * root, see {@link RootIndexingService}.
+ * The documents of the pages are built by a bounded pool of workers (virtual
+ * threads when the runtime supports them), the calling thread writes them in
+ * the pages order.
  */
 public class MultiRootPageIndexer extends PageIndexer
 {
     private static final String INDEXER_NAME = "PageIndexer";
     private static final String INDEXER_VERSION = "1.0.0";
+    private static final String PROPERTY_THREADS = "document-multirootindexers.pageIndexer.threads";
+    private static final int DEFAULT_THREADS = 8;
+
+    /** Number of pages submitted ahead of the writer, per worker */
+    private static final int PAGES_AHEAD_PER_THREAD = 2;
 
     /**
      * Indexes all pages. <br>
+     * Rebuilds the page fingerprints if enabled, see
+     * {@link PageFingerprintService}. The progress is exposed by an
+     * {@link IndexingJob} MBean, through which the indexing can be paused. It
+     * cannot be cancelled, as the core would commit a truncated index. <br>
      * {@inheritDoc}
      */
     public void indexDocuments(  ) throws IOException, InterruptedException, SiteMessageException
     {
-        String strPageBaseUrl = AppPropertiesService.getProperty( PROPERTY_PAGE_BASE_URL );
-        List<Page> listPages = PageTreeUtils.getListPagesFromRoot(  );
+        int nRootId = PortalService.getRootPageId(  );
+        Map<Integer, String> mapFingerprints = null;
+
+        // pages may have been created or moved on another node
+        PageTreeCacheService.getInstance(  ).invalidate(  );
 
-        for ( Page page : listPages )
+        if ( PageFingerprintService.isEnabled(  ) )
         {
-            UrlItem url = new UrlItem( strPageBaseUrl );
-            url.addParameter( PARAMETER_PAGE_ID, page.getId(  ) );
+            // computed first : a page updated meanwhile is reindexed by the next incremental run
+            mapFingerprints = PageFingerprintService.getFingerprints( PageTreeUtils.getListPagesIdsFromRoot( 
+                        nRootId ) );
+        }
+
+        // the core commits the index even if the indexing fails : pause only
+        IndexingJob job = IndexingJob.start( getName(  ), false );
+        Set<Integer> setIdsIndexedPages;
+
+        try
+        {
+            setIdsIndexedPages = indexPages( nRootId, CoreIndexTarget.getInstance(  ), job );
+        }
+        finally
+        {
+            job.finish(  );
+        }
+
+        if ( mapFingerprints != null )
+        {
+            // the pages in error are left out, so that the next incremental run retries them
+            mapFingerprints.keySet(  ).retainAll( setIdsIndexedPages );
+            PageFingerprintService.record( mapFingerprints );
+        }
+    }
+
+    /**
+     * Indexes the pages under a root page. The pages are written by batches,
+     * see {@link BatchingIndexTarget}.
+     * @param nRootId the root page id
+     * @param target the index to write the pages to
+     * @param job the progress of the indexing
+     * @return the ids of the pages written to the index
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception, or job cancelled
+     */
+    Set<Integer> indexPages( int nRootId, IndexTarget target, IndexingJob job )
+            throws IOException, InterruptedException
+    {
+        job.addToTotal( PageTreeUtils.getListPagesIdsFromRoot( nRootId ).size(  ) );
 
+        // the pages are loaded one at a time, when they are reached
+        Iterator<Page> iteratorPages = PageTreeUtils.iteratePagesFromRoot( nRootId );
+        Set<Integer> setIdsIndexedPages = new HashSet<Integer>(  );
+        int nThreads = AppPropertiesService.getPropertyInt( PROPERTY_THREADS, DEFAULT_THREADS );
+        BatchingIndexTarget batchingTarget = new BatchingIndexTarget( target );
+
+        try
+        {
+            if ( nThreads > 1 )
+            {
+                indexPagesConcurrently( iteratorPages, batchingTarget, nThreads, setIdsIndexedPages, job );
+            }
+            else
+            {
+                indexPagesSequentially( iteratorPages, batchingTarget, setIdsIndexedPages, job );
+            }
+
+            // the ids are returned once the pages are actually written
+            batchingTarget.close(  );
+        }
+        finally
+        {
+            batchingTarget.abort(  );
+        }
+
+        return setIdsIndexedPages;
+    }
+
+    /**
+     * Indexes the pages one at a time, on the calling thread
+     * @param iteratorPages the pages
+     * @param target the index to write the pages to
+     * @param setIdsIndexedPages the set the ids of the pages written are
+     *            added to
+     * @param job the progress of the indexing
+     * @throws IOException i/o exception
+     * @throws InterruptedException job cancelled
+     */
+    private void indexPagesSequentially( Iterator<Page> iteratorPages, IndexTarget target,
+            Set<Integer> setIdsIndexedPages, IndexingJob job ) throws IOException, InterruptedException
+    {
+        while ( iteratorPages.hasNext(  ) )
+        {
+            job.checkpoint(  );
+
+            Page page = iteratorPages.next(  );
             Document doc = null;
+            job.setCurrent( getDescription( page ) );
 
             try
             {
-                doc = getDocument( page, url.getUrl(  ) );
+                doc = buildPageDocument( page );
             }
             catch ( Exception e )
             {
-                String strMessage = "Page ID : " + page.getId(  );
-                IndexationService.error( this, e, strMessage );
+                logIndexingError( page, e );
             }
 
             if ( doc != null )
             {
-                IndexationService.write( doc );
+                target.write( doc );
+                setIdsIndexedPages.add( page.getId(  ) );
+                IndexingMetrics.getInstance(  ).countPage(  );
+            }
+
+            job.itemDone(  );
+        }
+    }
+
+    /**
+     * Builds the documents of the pages on a pool of workers and writes them
+     * in the pages order. At most a few pages per worker are submitted ahead
+     * of the writer, so the built documents waiting to be written are
+     * bounded.
+     * @param iteratorPages the pages
+     * @param target the index to write the pages to
+     * @param nThreads the number of workers
+     * @param setIdsIndexedPages the set the ids of the pages written are
+     *            added to
+     * @param job the progress of the indexing, checked before each page is
+     *            submitted
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception, or job cancelled
+     */
+    private void indexPagesConcurrently( Iterator<Page> iteratorPages, IndexTarget target, int nThreads,
+            Set<Integer> setIdsIndexedPages, IndexingJob job ) throws IOException, InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( nThreads,
+                IndexingThreadFactory.newBlockingTaskFactory( "page" ) );
+        LinkedList<PageDocumentTask> listPending = new LinkedList<PageDocumentTask>(  );
+        int nMaxPending = nThreads * PAGES_AHEAD_PER_THREAD;
+
+        try
+        {
+            while ( iteratorPages.hasNext(  ) )
+            {
+                job.checkpoint(  );
+
+                Page page = iteratorPages.next(  );
+
+                if ( listPending.size(  ) >= nMaxPending )
+                {
+                    writePage( listPending.removeFirst(  ), target, setIdsIndexedPages, job );
+                }
+
+                PageDocumentTask task = new PageDocumentTask( page );
+                task.setFuture( executor.submit( task ) );
+                listPending.add( task );
+            }
+
+            while ( !listPending.isEmpty(  ) )
+            {
+                writePage( listPending.removeFirst(  ), target, setIdsIndexedPages, job );
+            }
+        }
+        finally
+        {
+            for ( PageDocumentTask task : listPending )
+            {
+                task.getFuture(  ).cancel( true );
             }
+
+            executor.shutdownNow(  );
+        }
+    }
+
+    /**
+     * Waits for the document of a page and writes it. The errors raised by
+     * the worker are reported as indexing errors of the page.
+     * @param task the task building the document of the page
+     * @param target the index to write the page to
+     * @param setIdsIndexedPages the set the id of the page is added to if
+     *            written
+     * @param job the progress of the indexing
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception
+     */
+    private void writePage( PageDocumentTask task, IndexTarget target, Set<Integer> setIdsIndexedPages,
+            IndexingJob job ) throws IOException, InterruptedException
+    {
+        Document doc = null;
+        job.setCurrent( getDescription( task.getPage(  ) ) );
+
+        try
+        {
+            doc = task.getFuture(  ).get(  );
         }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause(  );
+            logIndexingError( task.getPage(  ),
+                    ( cause instanceof Exception ) ? (Exception) cause : new ExecutionException( cause ) );
+        }
+
+        if ( doc != null )
+        {
+            target.write( doc );
+            setIdsIndexedPages.add( task.getPage(  ).getId(  ) );
+            IndexingMetrics.getInstance(  ).countPage(  );
+        }
+
+        job.itemDone(  );
+    }
+
+    /**
+     * Builds the document of a page, timed as the page build stage of the
+     * {@link IndexingMetrics}
+     * @param page the page
+     * @return the document
+     * @throws IOException i/o exception
+     * @throws InterruptedException interrupted exception
+     * @throws SiteMessageException site message exception
+     */
+    private Document buildPageDocument( Page page ) throws IOException, InterruptedException, SiteMessageException
+    {
+        long lStart = System.nanoTime(  );
+
+        try
+        {
+            return getDocument( page, getPageUrl( page ) );
+        }
+        finally
+        {
+            IndexingMetrics.getInstance(  ).record( IndexingMetrics.STAGE_PAGE_BUILD, lStart );
+        }
+    }
+
+    /**
+     * Gets the url of a page
+     * @param page the page
+     * @return the url
+     */
+    private static String getPageUrl( Page page )
+    {
+        UrlItem url = new UrlItem( AppPropertiesService.getProperty( PROPERTY_PAGE_BASE_URL ) );
+        url.addParameter( PARAMETER_PAGE_ID, page.getId(  ) );
+
+        return url.getUrl(  );
+    }
+
+    /**
+     * Describes a page, for the progress of the indexing
+     * @param page the page
+     * @return the description
+     */
+    private static String getDescription( Page page )
+    {
+        return "page " + page.getId(  ) + " (" + page.getName(  ) + ")";
+    }
+
+    /**
+     * Reports an error raised while indexing a page
+     * @param page the page
+     * @param e the error
+     */
+    private void logIndexingError( Page page, Exception e )
+    {
+        String strMessage = "Page ID : " + page.getId(  );
+        IndexingMetrics.getInstance(  ).countError( e );
+        IndexationService.error( this, e, strMessage );
+    }
+
+    /**
+     * Builds the document of a page, for the incremental indexing. <br>
+     * The fingerprint of the page, if enabled, is stored once its document is
+     * built, so that a page whose indexer action is not processed yet is
+     * still seen as changed. The stamp is read first : a page updated
+     * meanwhile is reindexed by the next incremental run. <br>
+     * {@inheritDoc}
+     */
+    public List<Document> getDocuments( String strIdDocument )
+        throws IOException, InterruptedException, SiteMessageException
+    {
+        if ( !PageFingerprintService.isEnabled(  ) )
+        {
+            return super.getDocuments( strIdDocument );
+        }
+
+        int nIdPage = Integer.parseInt( strIdDocument );
+        String strFingerprint = PageFingerprintService.getFingerprint( nIdPage );
+        List<Document> listDocuments = super.getDocuments( strIdDocument );
+
+        if ( !listDocuments.isEmpty(  ) )
+        {
+            PageFingerprintService.record( nIdPage, strFingerprint );
+        }
+
+        return listDocuments;
     }
 
     /**
@@ -106,4 +406,58 @@ public class MultiRootPageIndexer extends PageIndexer
     {
         return INDEXER_VERSION;
     }
+
+    /**
+     * Builds the document of a page
+     */
+    private final class PageDocumentTask implements Callable<Document>
+    {
+        private final Page _page;
+        private Future<Document> _future;
+
+        /**
+         * Constructor
+         * @param page the page
+         */
+        PageDocumentTask( Page page )
+        {
+            _page = page;
+        }
+
+        /**
+         * Returns the page
+         * @return the page
+         */
+        Page getPage(  )
+        {
+            return _page;
+        }
+
+        /**
+         * Returns the result of the task
+         * @return the future of the document
+         */
+        Future<Document> getFuture(  )
+        {
+            return _future;
+        }
+
+        /**
+         * Sets the result of the task
+         * @param future the future of the document
+         */
+        void setFuture( Future<Document> future )
+        {
+            _future = future;
+        }
+
+        /**
+         *
+         *{@inheritDoc}
+         */
+        public Document call(  ) throws Exception
+        {
+            return buildPageDocument( _page );
+        }
+    }
 }
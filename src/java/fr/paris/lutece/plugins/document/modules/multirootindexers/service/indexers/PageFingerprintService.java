@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction.MultiRootIndexerActionHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageFingerprintHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.util.PageTreeUtils;
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.service.search.IndexationService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Incremental reindexing of the pages, based on the page fingerprints. <br>
+ * The fingerprint of a page is a hash of its update date and of the update
+ * dates of its portlets. The fingerprints are rebuilt by each full indexing
+ * of the pages, {@link #reindexChanged()} then compares them with the pages
+ * currently under the root and queues indexer actions only for the pages
+ * whose fingerprint changed, which are then processed by the incremental
+ * indexing :
+ * <ul>
+ * <li>new pages are created</li>
+ * <li>pages whose fingerprint changed are reindexed</li>
+ * <li>pages no longer under the root are deleted</li>
+ * </ul>
+ * The fingerprint of a created or reindexed page is only stored when the
+ * incremental indexing builds its document, see
+ * {@link MultiRootPageIndexer#getDocuments(String)}, so that a page stays
+ * changed until its action has been processed.
+ */
+public final class PageFingerprintService
+{
+    private static final String PROPERTY_ENABLED = "document-multirootindexers.pageFingerprint.enabled";
+    private static final String CHARSET_UTF8 = "UTF-8";
+
+    /**
+     * Private constructor
+     */
+    private PageFingerprintService( )
+    {
+        // nothing
+    }
+
+    /**
+     * Tells whether the fingerprints are maintained or not
+     * @return true if enabled, otherwise false
+     */
+    public static boolean isEnabled( )
+    {
+        return Boolean.parseBoolean( AppPropertiesService.getProperty( PROPERTY_ENABLED, "false" ) );
+    }
+
+    /**
+     * Computes the current fingerprints of pages
+     * @param collectionIdsPages the page ids
+     * @return the fingerprints by page id, the pages which no longer exist
+     *         are left out
+     */
+    static Map<Integer, String> getFingerprints( Collection<Integer> collectionIdsPages )
+    {
+        Map<Integer, String> mapStamps = PageFingerprintHome.findUpdateStamps( );
+        Map<Integer, String> mapFingerprints = new HashMap<Integer, String>( collectionIdsPages.size( ) * 2 );
+
+        for ( Integer nIdPage : collectionIdsPages )
+        {
+            String strStamp = mapStamps.get( nIdPage );
+
+            if ( strStamp != null )
+            {
+                mapFingerprints.put( nIdPage, hash( strStamp ) );
+            }
+        }
+
+        return mapFingerprints;
+    }
+
+    /**
+     * Computes the current fingerprint of a page
+     * @param nIdPage the page id
+     * @return the fingerprint, or null if the page no longer exists
+     */
+    static String getFingerprint( int nIdPage )
+    {
+        String strStamp = PageFingerprintHome.findUpdateStamp( nIdPage );
+
+        return ( strStamp == null ) ? null : hash( strStamp );
+    }
+
+    /**
+     * Hashes an update stamp
+     * @param strStamp the update dates of a page and of its portlets
+     * @return the fingerprint
+     */
+    private static String hash( String strStamp )
+    {
+        try
+        {
+            byte[] hash = ExtractedTextCache.newDigest( ).digest( strStamp.getBytes( CHARSET_UTF8 ) );
+
+            return ExtractedTextCache.toHex( hash );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Replaces the stored fingerprints with those of the pages just indexed
+     * @param mapFingerprints the fingerprints by page id
+     */
+    static void record( Map<Integer, String> mapFingerprints )
+    {
+        PageFingerprintHome.removeAll( );
+        PageFingerprintHome.create( mapFingerprints );
+    }
+
+    /**
+     * Stores the fingerprint of a page whose document has just been built
+     * again
+     * @param nIdPage the page id
+     * @param strFingerprint the fingerprint computed before the document was
+     *            built, or null if the page no longer exists
+     */
+    static void record( int nIdPage, String strFingerprint )
+    {
+        PageFingerprintHome.remove( nIdPage );
+
+        if ( strFingerprint != null )
+        {
+            PageFingerprintHome.create( Collections.singletonMap( nIdPage, strFingerprint ) );
+        }
+    }
+
+    /**
+     * Queues the indexer actions for the pages which changed since they were
+     * indexed. The fingerprints of the deleted pages are removed once the
+     * actions are stored, the others are stored when the pages are indexed
+     * again.
+     * @return the logs
+     */
+    public static String reindexChanged( )
+    {
+        MultiRootPageIndexer indexer = new MultiRootPageIndexer( );
+        Map<Integer, String> mapStored = PageFingerprintHome.findAll( );
+        Map<Integer, String> mapCurrent = getFingerprints( PageTreeUtils.getListPagesIdsFromRoot( ) );
+        List<IndexerAction> listActions = new ArrayList<IndexerAction>( );
+        int nUnchanged = 0;
+        int nCreated = 0;
+        int nReindexed = 0;
+
+        for ( Map.Entry<Integer, String> entry : mapCurrent.entrySet( ) )
+        {
+            String strStored = mapStored.remove( entry.getKey( ) );
+
+            if ( strStored == null )
+            {
+                listActions.add( newAction( entry.getKey( ), indexer, IndexerAction.TASK_CREATE ) );
+                nCreated++;
+            }
+            else if ( !strStored.equals( entry.getValue( ) ) )
+            {
+                listActions.add( newAction( entry.getKey( ), indexer, IndexerAction.TASK_MODIFY ) );
+                nReindexed++;
+            }
+            else
+            {
+                nUnchanged++;
+            }
+        }
+
+        // the pages left are no longer under the root
+        for ( Integer nIdPage : mapStored.keySet( ) )
+        {
+            listActions.add( newAction( nIdPage, indexer, IndexerAction.TASK_DELETE ) );
+        }
+
+        MultiRootIndexerActionHome.create( listActions );
+
+        // if this fails, the next run queues the deletes again
+        for ( Integer nIdPage : mapStored.keySet( ) )
+        {
+            PageFingerprintHome.remove( nIdPage );
+        }
+
+        return "Pages unchanged : " + nUnchanged + ", created : " + nCreated + ", reindexed : " + nReindexed
+                + ", deleted : " + mapStored.size( );
+    }
+
+    /**
+     * Builds an indexer action
+     * @param nIdPage the page id
+     * @param indexer the indexer
+     * @param nIdTask the task
+     * @return the action
+     */
+    private static IndexerAction newAction( int nIdPage, MultiRootPageIndexer indexer, int nIdTask )
+    {
+        IndexerAction indexerAction = new IndexerAction( );
+        indexerAction.setIdDocument( Integer.toString( nIdPage ) );
+        indexerAction.setIndexerName( indexer.getName( ) );
+        indexerAction.setIdTask( nIdTask );
+        indexerAction.setIdPortlet( IndexationService.ALL_DOCUMENT );
+
+        return indexerAction;
+    }
+}
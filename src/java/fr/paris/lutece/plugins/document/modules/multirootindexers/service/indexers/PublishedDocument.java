@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A document and the portlets it is published in. The content of the document
+ * is built once and shared by the lucene documents of all its portlets.
+ */
+final class PublishedDocument
+{
+    private final int _nIdDocument;
+    private final List<Integer> _listIdsPortlets = new ArrayList<Integer>( 1 );
+    private final List<String> _listRoles = new ArrayList<String>( 1 );
+
+    /**
+     * Constructor
+     * @param nIdDocument the document id
+     */
+    PublishedDocument( int nIdDocument )
+    {
+        _nIdDocument = nIdDocument;
+    }
+
+    /**
+     * Adds a portlet the document is published in
+     * @param nIdPortlet the portlet id
+     * @param strRole the role of the page of the portlet
+     */
+    void addPortlet( int nIdPortlet, String strRole )
+    {
+        _listIdsPortlets.add( nIdPortlet );
+        _listRoles.add( strRole );
+    }
+
+    /**
+     * Gets the document id
+     * @return the document id
+     */
+    int getIdDocument( )
+    {
+        return _nIdDocument;
+    }
+
+    /**
+     * Gets the number of portlets
+     * @return the number of portlets
+     */
+    int getPortletCount( )
+    {
+        return _listIdsPortlets.size( );
+    }
+
+    /**
+     * Gets the id of a portlet
+     * @param nIndex the index of the portlet
+     * @return the portlet id
+     */
+    int getIdPortlet( int nIndex )
+    {
+        return _listIdsPortlets.get( nIndex );
+    }
+
+    /**
+     * Gets the role of the page of a portlet
+     * @param nIndex the index of the portlet
+     * @return the role
+     */
+    String getRole( int nIndex )
+    {
+        return _listRoles.get( nIndex );
+    }
+
+    /**
+     * Describes the document and its portlets, for the progress of the
+     * indexing
+     * @return the description
+     */
+    String getDescription( )
+    {
+        return "document " + _nIdDocument + ", portlets " + _listIdsPortlets;
+    }
+}
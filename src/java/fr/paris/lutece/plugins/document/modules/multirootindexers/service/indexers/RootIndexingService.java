@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics.IndexingJob;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.util.IndexingThreadFactory;
+import fr.paris.lutece.portal.service.portal.PortalService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Builds the indexes of the additional roots. The portal root is indexed in
+ * the core index by the indexers, every other root listed in the
+ * <code>document-multirootindexers.roots</code> property is indexed (pages
+ * and documents) in its own lucene directory, configured by
+ * <code>document-multirootindexers.root.&lt;id&gt;.index.path</code>.
+ * Each root is built on a worker of its own and its failures are only
+ * logged, so that a failing or slow root does not hold back the others.
+ * The build of a root is exposed as the <code>root-&lt;id&gt;</code>
+ * {@link IndexingJob}, a cancelled build is rolled back.
+ */
+final class RootIndexingService
+{
+    private static final String PROPERTY_ROOTS = "document-multirootindexers.roots";
+    private static final String PROPERTY_ROOT_PREFIX = "document-multirootindexers.root.";
+    private static final String PROPERTY_INDEX_PATH_SUFFIX = ".index.path";
+    private static final String SEPARATOR = ",";
+    private static final String JOB_NAME_PREFIX = "root-";
+
+    /** Roots whose build is running, a root is not built twice at once */
+    private static final Set<Integer> _setRunningRoots = Collections.synchronizedSet( new HashSet<Integer>( ) );
+
+    /**
+     * Private constructor
+     */
+    private RootIndexingService( )
+    {
+    }
+
+    /**
+     * Gets the configured roots other than the portal root, with the path of
+     * their index
+     * @return the index paths by root page id, in configuration order
+     */
+    static Map<Integer, String> getAdditionalRoots( )
+    {
+        Map<Integer, String> mapRoots = new LinkedHashMap<Integer, String>( );
+        int nPortalRootId = PortalService.getRootPageId( );
+
+        for ( String strRootId : AppPropertiesService.getProperty( PROPERTY_ROOTS, StringUtils.EMPTY ).split( SEPARATOR ) )
+        {
+            if ( StringUtils.isBlank( strRootId ) )
+            {
+                continue;
+            }
+
+            int nRootId;
+
+            try
+            {
+                nRootId = Integer.parseInt( strRootId.trim( ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                AppLogService.error( "Invalid root page id : " + strRootId );
+
+                continue;
+            }
+
+            if ( nRootId == nPortalRootId )
+            {
+                // Indexed in the core index
+                continue;
+            }
+
+            String strPath = AppPropertiesService.getProperty( PROPERTY_ROOT_PREFIX + nRootId + PROPERTY_INDEX_PATH_SUFFIX );
+
+            if ( StringUtils.isBlank( strPath ) )
+            {
+                AppLogService.error( "No index path configured for the root page " + nRootId );
+
+                continue;
+            }
+
+            mapRoots.put( nRootId, strPath );
+        }
+
+        return mapRoots;
+    }
+
+    /**
+     * Starts the builds of the indexes of the additional roots and returns
+     * without waiting for them. A root whose previous build is still running
+     * is skipped.
+     */
+    static void startAdditionalRoots( )
+    {
+        Map<Integer, String> mapRoots = getAdditionalRoots( );
+
+        if ( mapRoots.isEmpty( ) )
+        {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( mapRoots.size( ), new IndexingThreadFactory( "root" ) );
+
+        for ( Map.Entry<Integer, String> entry : mapRoots.entrySet( ) )
+        {
+            if ( _setRunningRoots.add( entry.getKey( ) ) )
+            {
+                executor.execute( new RootIndexingTask( entry.getKey( ), entry.getValue( ) ) );
+            }
+            else
+            {
+                AppLogService.info( "The index of the root page " + entry.getKey( ) + " is still being built, skipped" );
+            }
+        }
+
+        // The workers end with their task
+        executor.shutdown( );
+    }
+
+    /**
+     * Builds the index of a root
+     */
+    private static final class RootIndexingTask implements Runnable
+    {
+        private final int _nRootId;
+        private final String _strPath;
+
+        /**
+         * Constructor
+         * @param nRootId the root page id
+         * @param strPath the path of the index directory
+         */
+        RootIndexingTask( int nRootId, String strPath )
+        {
+            _nRootId = nRootId;
+            _strPath = strPath;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run( )
+        {
+            long lStart = System.currentTimeMillis( );
+            DirectoryIndexTarget target = null;
+            IndexingJob job = IndexingJob.start( JOB_NAME_PREFIX + _nRootId, true );
+
+            try
+            {
+                target = new DirectoryIndexTarget( _strPath );
+                new MultiRootPageIndexer( ).indexPages( _nRootId, target, job );
+                new MultiRootDocumentIndexer( ).indexRoot( _nRootId, target, null, job );
+                target.commit( );
+                target = null;
+                AppLogService.info( "Index of the root page " + _nRootId + " built in "
+                        + ( System.currentTimeMillis( ) - lStart ) + " ms" );
+            }
+            catch ( Throwable e )
+            {
+                AppLogService.error( "Unable to build the index of the root page " + _nRootId + " : " + e.getMessage( ),
+                        e );
+            }
+            finally
+            {
+                if ( target != null )
+                {
+                    target.rollback( );
+                }
+
+                job.finish( );
+                _setRunningRoots.remove( _nRootId );
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * Progress of a running indexing job, registered as an MBean for the time of
+ * the job so that it can be followed, paused or cancelled from a JMX console.
+ * <br>
+ * The control is cooperative : the indexing thread calls
+ * {@link #checkpoint()} before each item, which waits while the job is
+ * paused and fails once it is cancelled.
+ */
+public final class IndexingJob implements IndexingJobMXBean
+{
+    private static final String OBJECT_NAME_PREFIX = "fr.paris.lutece.plugins.document.modules.multirootindexers:" +
+        "type=IndexingJob,name=";
+    private static final String STATE_RUNNING = "RUNNING";
+    private static final String STATE_PAUSED = "PAUSED";
+    private static final String STATE_CANCELLING = "CANCELLING";
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int WINDOW_SHORT = 10;
+    private static final int WINDOW_MEDIUM = 60;
+    private static final int WINDOW_LONG = 300;
+    private final String _strName;
+    private final ObjectName _objectName;
+    private final boolean _bCancellable;
+    private final long _lStartMillis = System.currentTimeMillis(  );
+
+    /** Items done per second over the longest window, indexed by second modulo the window */
+    private final long[] _lItemsPerSecond = new long[WINDOW_LONG];
+    private final long[] _lSeconds = new long[WINDOW_LONG];
+    private volatile String _strCurrent;
+    private volatile long _lItemsDone;
+    private volatile long _lEstimatedTotal;
+    private boolean _bPaused;
+    private volatile boolean _bCancelled;
+
+    /**
+     * Constructor
+     * @param strName the name of the job
+     * @param objectName the name of the MBean
+     * @param bCancellable true if the job can be cancelled
+     */
+    private IndexingJob( String strName, ObjectName objectName, boolean bCancellable )
+    {
+        _strName = strName;
+        _objectName = objectName;
+        _bCancellable = bCancellable;
+    }
+
+    /**
+     * Creates a job and registers its MBean, replacing the MBean of a
+     * previous job of the same name
+     * @param strName the name of the job, unique among the running jobs
+     * @param bCancellable true if the job can be cancelled, false if it can
+     *            only be paused, see {@link #isCancellable()}
+     * @return the job
+     */
+    public static IndexingJob start( String strName, boolean bCancellable )
+    {
+        ObjectName objectName = null;
+
+        try
+        {
+            objectName = new ObjectName( OBJECT_NAME_PREFIX + ObjectName.quote( strName ) );
+        }
+        catch ( Exception e )
+        {
+            AppLogService.error( "Invalid indexing job name " + strName + " : " + e.getMessage(  ), e );
+        }
+
+        IndexingJob job = new IndexingJob( strName, objectName, bCancellable );
+
+        if ( objectName != null )
+        {
+            try
+            {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer(  );
+
+                if ( server.isRegistered( objectName ) )
+                {
+                    server.unregisterMBean( objectName );
+                }
+
+                server.registerMBean( job, objectName );
+            }
+            catch ( Exception e )
+            {
+                AppLogService.error( "Unable to register the MBean of the indexing job " + strName + " : " +
+                    e.getMessage(  ), e );
+            }
+        }
+
+        return job;
+    }
+
+    /**
+     * Unregisters the MBean of the job, at the end of the job
+     */
+    public void finish(  )
+    {
+        if ( _objectName == null )
+        {
+            return;
+        }
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer(  );
+
+            if ( server.isRegistered( _objectName ) )
+            {
+                server.unregisterMBean( _objectName );
+            }
+        }
+        catch ( Exception e )
+        {
+            AppLogService.error( "Unable to unregister the MBean of the indexing job " + _strName + " : " +
+                e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Adds items to the estimated total, as they are discovered
+     * @param lItems the number of items
+     */
+    public synchronized void addToTotal( long lItems )
+    {
+        _lEstimatedTotal += lItems;
+    }
+
+    /**
+     * Sets the item being indexed
+     * @param strCurrent the description of the item
+     */
+    public void setCurrent( String strCurrent )
+    {
+        _strCurrent = strCurrent;
+    }
+
+    /**
+     * Counts an item as done
+     */
+    public synchronized void itemDone(  )
+    {
+        long lSecond = System.currentTimeMillis(  ) / MILLIS_PER_SECOND;
+        int nSlot = (int) ( lSecond % WINDOW_LONG );
+
+        if ( _lSeconds[nSlot] != lSecond )
+        {
+            _lSeconds[nSlot] = lSecond;
+            _lItemsPerSecond[nSlot] = 0;
+        }
+
+        _lItemsPerSecond[nSlot]++;
+        _lItemsDone++;
+    }
+
+    /**
+     * Waits while the job is paused, called by the indexing thread before
+     * each item
+     * @throws InterruptedException if the job has been cancelled, or if the
+     *             thread is interrupted while paused
+     */
+    public synchronized void checkpoint(  ) throws InterruptedException
+    {
+        while ( _bPaused && !_bCancelled )
+        {
+            wait(  );
+        }
+
+        if ( _bCancelled )
+        {
+            throw new InterruptedException( "Indexing job " + _strName + " cancelled" );
+        }
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public String getName(  )
+    {
+        return _strName;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public synchronized String getState(  )
+    {
+        if ( _bCancelled )
+        {
+            return STATE_CANCELLING;
+        }
+
+        return _bPaused ? STATE_PAUSED : STATE_RUNNING;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public String getCurrent(  )
+    {
+        return _strCurrent;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getItemsDone(  )
+    {
+        return _lItemsDone;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getEstimatedTotal(  )
+    {
+        return _lEstimatedTotal;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public double getPercentDone(  )
+    {
+        long lTotal = _lEstimatedTotal;
+
+        return ( lTotal == 0 ) ? 0 : Math.min( 100, ( _lItemsDone * 100.0 ) / lTotal );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public double getRateLast10Seconds(  )
+    {
+        return getRate( WINDOW_SHORT );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public double getRateLastMinute(  )
+    {
+        return getRate( WINDOW_MEDIUM );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public double getRateLast5Minutes(  )
+    {
+        return getRate( WINDOW_LONG );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getEtaSeconds(  )
+    {
+        double dRate = getRateLastMinute(  );
+        long lRemaining = _lEstimatedTotal - _lItemsDone;
+
+        if ( dRate <= 0 )
+        {
+            return -1;
+        }
+
+        return (long) Math.ceil( Math.max( 0, lRemaining ) / dRate );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getElapsedSeconds(  )
+    {
+        return ( System.currentTimeMillis(  ) - _lStartMillis ) / MILLIS_PER_SECOND;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public synchronized void pause(  )
+    {
+        _bPaused = true;
+        AppLogService.info( "Indexing job " + _strName + " paused" );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public synchronized void resume(  )
+    {
+        _bPaused = false;
+        notifyAll(  );
+        AppLogService.info( "Indexing job " + _strName + " resumed" );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public boolean isCancellable(  )
+    {
+        return _bCancellable;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public synchronized void cancel(  )
+    {
+        if ( !_bCancellable )
+        {
+            throw new IllegalStateException( "The indexing job " + _strName + " writes the core index and cannot " +
+                "be cancelled without publishing a truncated index, pause it instead" );
+        }
+
+        _bCancelled = true;
+        notifyAll(  );
+        AppLogService.info( "Indexing job " + _strName + " cancelled" );
+    }
+
+    /**
+     * Computes the throughput over the last seconds, the current second
+     * excluded since it is not over. The window is shortened to the elapsed
+     * time at the start of the job.
+     * @param nWindow the number of seconds
+     * @return the number of items per second
+     */
+    private synchronized double getRate( int nWindow )
+    {
+        long lNow = System.currentTimeMillis(  ) / MILLIS_PER_SECOND;
+        long lSeconds = Math.min( nWindow, lNow - ( _lStartMillis / MILLIS_PER_SECOND ) );
+
+        if ( lSeconds <= 0 )
+        {
+            return 0;
+        }
+
+        long lItems = 0;
+
+        for ( long lSecond = lNow - lSeconds; lSecond < lNow; lSecond++ )
+        {
+            int nSlot = (int) ( lSecond % WINDOW_LONG );
+
+            if ( _lSeconds[nSlot] == lSecond )
+            {
+                lItems += _lItemsPerSecond[nSlot];
+            }
+        }
+
+        return (double) lItems / lSeconds;
+    }
+}
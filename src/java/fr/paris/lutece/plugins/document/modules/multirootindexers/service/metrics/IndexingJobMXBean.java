@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics;
+
+
+/**
+ * JMX view and control of a running indexing job. The rates are in items
+ * (documents or pages) per second.
+ */
+public interface IndexingJobMXBean
+{
+    /**
+     * Gets the name of the job
+     * @return the name
+     */
+    String getName(  );
+
+    /**
+     * Gets the state of the job : RUNNING, PAUSED or CANCELLING
+     * @return the state
+     */
+    String getState(  );
+
+    /**
+     * Gets the item being indexed (page, document and portlet)
+     * @return the current item
+     */
+    String getCurrent(  );
+
+    /**
+     * Gets the number of items indexed
+     * @return the count
+     */
+    long getItemsDone(  );
+
+    /**
+     * Gets the number of items to index, known once they have been
+     * discovered
+     * @return the estimated total
+     */
+    long getEstimatedTotal(  );
+
+    /**
+     * Gets the progress of the job
+     * @return the percentage of the estimated total indexed
+     */
+    double getPercentDone(  );
+
+    /**
+     * Gets the throughput over the last 10 seconds
+     * @return the rate
+     */
+    double getRateLast10Seconds(  );
+
+    /**
+     * Gets the throughput over the last minute
+     * @return the rate
+     */
+    double getRateLastMinute(  );
+
+    /**
+     * Gets the throughput over the last 5 minutes
+     * @return the rate
+     */
+    double getRateLast5Minutes(  );
+
+    /**
+     * Gets the estimated remaining time, from the throughput over the last
+     * minute
+     * @return the remaining time in seconds, or -1 if unknown
+     */
+    long getEtaSeconds(  );
+
+    /**
+     * Gets the time since the start of the job
+     * @return the elapsed time in seconds
+     */
+    long getElapsedSeconds(  );
+
+    /**
+     * Suspends the job before its next item, until it is resumed or
+     * cancelled
+     */
+    void pause(  );
+
+    /**
+     * Resumes a paused job
+     */
+    void resume(  );
+
+    /**
+     * Tells whether the job can be cancelled. The full indexings of the core
+     * index can only be paused : the core commits whatever has been written
+     * to the index it recreated, so cancelling them would publish a
+     * truncated index.
+     * @return true if {@link #cancel()} is allowed
+     */
+    boolean isCancellable(  );
+
+    /**
+     * Stops the job before its next item, and discards the index being
+     * rebuilt, the previous one being kept. Refused if the job is not
+     * cancellable, see {@link #isCancellable()}.
+     */
+    void cancel(  );
+}
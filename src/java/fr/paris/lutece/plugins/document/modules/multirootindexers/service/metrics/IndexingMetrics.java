@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction.IndexerActionCoalescer;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers.ExtractedTextCache;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * Per stage latency histograms, counters and errors of the indexers. The
+ * metrics are cumulated since the start of the webapp (or the last reset),
+ * exposed through JMX and as a report readable from the daemons admin page.
+ */
+public final class IndexingMetrics implements IndexingMetricsMXBean
+{
+    /** Discovery of the published documents of a root */
+    public static final String STAGE_DISCOVERY = "discovery";
+
+    /** Load of a batch of documents */
+    public static final String STAGE_FETCH = "fetch";
+
+    /** Text content of a document, attachments included */
+    public static final String STAGE_CONTENT = "content";
+
+    /** Read of the attachments of a document */
+    public static final String STAGE_ATTACHMENT = "attachment";
+
+    /** Text extraction of an attachment */
+    public static final String STAGE_PARSE = "parse";
+
+    /** Build of the Lucene document of a document */
+    public static final String STAGE_BUILD = "build";
+
+    /** Build of the Lucene document of a page */
+    public static final String STAGE_PAGE_BUILD = "page.build";
+
+    /** Write to the index, of a document or of a batch of documents */
+    public static final String STAGE_WRITE = "write";
+
+    /** Wait of the indexing for the index writer, when it is behind */
+    public static final String STAGE_WRITE_WAIT = "write.wait";
+    private static final String[] STAGES =
+        {
+            STAGE_DISCOVERY, STAGE_FETCH, STAGE_CONTENT, STAGE_ATTACHMENT, STAGE_PARSE, STAGE_BUILD, STAGE_PAGE_BUILD,
+            STAGE_WRITE, STAGE_WRITE_WAIT
+        };
+    private static final String OBJECT_NAME = "fr.paris.lutece.plugins.document.modules.multirootindexers:" +
+        "type=IndexingMetrics";
+    private static final double PERCENTILE = 95;
+    private static final IndexingMetrics _singleton = new IndexingMetrics(  );
+    private final Map<String, StageTimer> _mapTimers = new LinkedHashMap<String, StageTimer>(  );
+    private final ConcurrentMap<String, AtomicLong> _mapErrors = new ConcurrentHashMap<String, AtomicLong>(  );
+    private final AtomicLong _lDocuments = new AtomicLong(  );
+    private final AtomicLong _lPages = new AtomicLong(  );
+    private final AtomicLong _lAttachmentBytes = new AtomicLong(  );
+
+    /**
+     * Private constructor, the timers are created once so that the map is
+     * only read afterwards
+     */
+    private IndexingMetrics(  )
+    {
+        for ( String strStage : STAGES )
+        {
+            _mapTimers.put( strStage, new StageTimer(  ) );
+        }
+    }
+
+    /**
+     * Gets the metrics
+     * @return the unique instance
+     */
+    public static IndexingMetrics getInstance(  )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Registers the metrics on the platform MBean server, replacing a previous
+     * registration (of a previous deployment of the webapp)
+     */
+    public static void registerMBean(  )
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer(  );
+            ObjectName name = new ObjectName( OBJECT_NAME );
+
+            if ( server.isRegistered( name ) )
+            {
+                server.unregisterMBean( name );
+            }
+
+            server.registerMBean( _singleton, name );
+        }
+        catch ( Exception e )
+        {
+            AppLogService.error( "Unable to register the indexing metrics MBean : " + e.getMessage(  ), e );
+        }
+    }
+
+    /**
+     * Records the duration of an operation of a stage
+     * @param strStage the stage, one of the STAGE_ constants
+     * @param lStartNanos the value of {@link System#nanoTime()} at the start of
+     *            the operation
+     */
+    public void record( String strStage, long lStartNanos )
+    {
+        StageTimer timer = _mapTimers.get( strStage );
+
+        if ( timer != null )
+        {
+            timer.record( System.nanoTime(  ) - lStartNanos );
+        }
+    }
+
+    /**
+     * Counts an indexed document
+     */
+    public void countDocument(  )
+    {
+        _lDocuments.incrementAndGet(  );
+    }
+
+    /**
+     * Counts an indexed page
+     */
+    public void countPage(  )
+    {
+        _lPages.incrementAndGet(  );
+    }
+
+    /**
+     * Counts attachment bytes read
+     * @param lBytes the number of bytes
+     */
+    public void countAttachmentBytes( long lBytes )
+    {
+        _lAttachmentBytes.addAndGet( lBytes );
+    }
+
+    /**
+     * Counts an error by the class of its root cause
+     * @param throwable the error
+     */
+    public void countError( Throwable throwable )
+    {
+        Throwable cause = throwable;
+
+        while ( ( cause.getCause(  ) != null ) && ( cause.getCause(  ) != cause ) )
+        {
+            cause = cause.getCause(  );
+        }
+
+        String strCause = cause.getClass(  ).getName(  );
+        AtomicLong lCount = _mapErrors.get( strCause );
+
+        if ( lCount == null )
+        {
+            AtomicLong lNew = new AtomicLong(  );
+            lCount = _mapErrors.putIfAbsent( strCause, lNew );
+
+            if ( lCount == null )
+            {
+                lCount = lNew;
+            }
+        }
+
+        lCount.incrementAndGet(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Long> getStageCounts(  )
+    {
+        Map<String, Long> map = new LinkedHashMap<String, Long>(  );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).getCount(  ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Double> getStageTotalMillis(  )
+    {
+        Map<String, Double> map = new LinkedHashMap<String, Double>(  );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).getTotalMillis(  ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Double> getStageMeanMillis(  )
+    {
+        Map<String, Double> map = new LinkedHashMap<String, Double>(  );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).getMeanMillis(  ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Double> getStageP95Millis(  )
+    {
+        Map<String, Double> map = new LinkedHashMap<String, Double>(  );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).getPercentileMillis( PERCENTILE ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Double> getStageMaxMillis(  )
+    {
+        Map<String, Double> map = new LinkedHashMap<String, Double>(  );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).getMaxMillis(  ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getDocumentsIndexed(  )
+    {
+        return _lDocuments.get(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getPagesIndexed(  )
+    {
+        return _lPages.get(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getAttachmentBytes(  )
+    {
+        return _lAttachmentBytes.get(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getExtractedTextCacheHits(  )
+    {
+        return ExtractedTextCache.getInstance(  ).getHits(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getExtractedTextCacheMisses(  )
+    {
+        return ExtractedTextCache.getInstance(  ).getMisses(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getExtractedTextCacheEvictions(  )
+    {
+        return ExtractedTextCache.getInstance(  ).getEvictions(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getIndexerActionsCoalescedOnInsert(  )
+    {
+        return IndexerActionCoalescer.getCoalescedOnInsert(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public long getIndexerActionsCoalescedPending(  )
+    {
+        return IndexerActionCoalescer.getCoalescedPending(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Map<String, Long> getErrors(  )
+    {
+        Map<String, Long> map = new TreeMap<String, Long>(  );
+
+        for ( Map.Entry<String, AtomicLong> entry : _mapErrors.entrySet(  ) )
+        {
+            map.put( entry.getKey(  ), entry.getValue(  ).get(  ) );
+        }
+
+        return map;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public String getReport(  )
+    {
+        StringBuilder sbReport = new StringBuilder(  );
+        sbReport.append( String.format( "Documents : %d, pages : %d, attachment bytes : %d%n",
+                _lDocuments.get(  ), _lPages.get(  ), _lAttachmentBytes.get(  ) ) );
+        sbReport.append( String.format( "Extracted text cache : hits %d, misses %d, evictions %d%n",
+                getExtractedTextCacheHits(  ), getExtractedTextCacheMisses(  ), getExtractedTextCacheEvictions(  ) ) );
+        sbReport.append( String.format( "Indexer actions coalesced : on insert %d, pending %d%n",
+                getIndexerActionsCoalescedOnInsert(  ), getIndexerActionsCoalescedPending(  ) ) );
+        sbReport.append( String.format( "%-12s %10s %12s %10s %10s %10s%n", "Stage", "Count", "Total (ms)",
+                "Mean (ms)", "P95 (ms)", "Max (ms)" ) );
+
+        for ( Map.Entry<String, StageTimer> entry : _mapTimers.entrySet(  ) )
+        {
+            StageTimer timer = entry.getValue(  );
+            sbReport.append( String.format( "%-12s %10d %12.1f %10.3f %10.3f %10.3f%n", entry.getKey(  ),
+                    timer.getCount(  ), timer.getTotalMillis(  ), timer.getMeanMillis(  ),
+                    timer.getPercentileMillis( PERCENTILE ), timer.getMaxMillis(  ) ) );
+        }
+
+        Map<String, Long> mapErrors = getErrors(  );
+
+        if ( mapErrors.isEmpty(  ) )
+        {
+            sbReport.append( "No error" );
+        }
+        else
+        {
+            sbReport.append( "Errors :" );
+
+            for ( Map.Entry<String, Long> entry : mapErrors.entrySet(  ) )
+            {
+                sbReport.append( String.format( "%n  %s : %d", entry.getKey(  ), entry.getValue(  ) ) );
+            }
+        }
+
+        return sbReport.toString(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public void reset(  )
+    {
+        for ( StageTimer timer : _mapTimers.values(  ) )
+        {
+            timer.reset(  );
+        }
+
+        _mapErrors.clear(  );
+        _lDocuments.set( 0 );
+        _lPages.set( 0 );
+        _lAttachmentBytes.set( 0 );
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics;
+
+import java.util.Map;
+
+
+/**
+ * JMX view of the indexing metrics. The durations are in milliseconds, the
+ * maps are keyed by stage name (or by error cause for the errors).
+ */
+public interface IndexingMetricsMXBean
+{
+    /**
+     * Gets the number of timed operations by stage
+     * @return the counts
+     */
+    Map<String, Long> getStageCounts(  );
+
+    /**
+     * Gets the time spent by stage
+     * @return the totals, in milliseconds
+     */
+    Map<String, Double> getStageTotalMillis(  );
+
+    /**
+     * Gets the mean duration by stage
+     * @return the means, in milliseconds
+     */
+    Map<String, Double> getStageMeanMillis(  );
+
+    /**
+     * Gets the 95th percentile of the durations by stage
+     * @return the upper bounds of the 95th percentiles, in milliseconds
+     */
+    Map<String, Double> getStageP95Millis(  );
+
+    /**
+     * Gets the longest duration by stage
+     * @return the max, in milliseconds
+     */
+    Map<String, Double> getStageMaxMillis(  );
+
+    /**
+     * Gets the number of documents indexed
+     * @return the count
+     */
+    long getDocumentsIndexed(  );
+
+    /**
+     * Gets the number of pages indexed
+     * @return the count
+     */
+    long getPagesIndexed(  );
+
+    /**
+     * Gets the number of attachment bytes read
+     * @return the count
+     */
+    long getAttachmentBytes(  );
+
+    /**
+     * Gets the number of texts found in the extracted text cache
+     * @return the count, since the start of the webapp
+     */
+    long getExtractedTextCacheHits(  );
+
+    /**
+     * Gets the number of texts not found in the extracted text cache
+     * @return the count, since the start of the webapp
+     */
+    long getExtractedTextCacheMisses(  );
+
+    /**
+     * Gets the number of texts evicted from the extracted text cache
+     * @return the count, since the start of the webapp
+     */
+    long getExtractedTextCacheEvictions(  );
+
+    /**
+     * Gets the number of indexer actions collapsed when inserted by batches
+     * @return the count, since the start of the webapp
+     */
+    long getIndexerActionsCoalescedOnInsert(  );
+
+    /**
+     * Gets the number of pending indexer actions collapsed by the coalesce
+     * daemon
+     * @return the count, since the start of the webapp
+     */
+    long getIndexerActionsCoalescedPending(  );
+
+    /**
+     * Gets the number of errors by root cause class
+     * @return the counts
+     */
+    Map<String, Long> getErrors(  );
+
+    /**
+     * Gets the metrics as a readable report
+     * @return the report
+     */
+    String getReport(  );
+
+    /**
+     * Clears the metrics
+     */
+    void reset(  );
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Latency histogram of an indexing stage. The durations are counted in
+ * buckets of powers of two microseconds, so that the percentiles are known
+ * within a factor of two with a fixed, lock free, footprint.
+ */
+final class StageTimer
+{
+    /** Bucket i counts the durations from 2^(i-1) (included) to 2^i (excluded) microseconds */
+    private static final int NB_BUCKETS = 40;
+    private static final long NANOS_PER_MICRO = 1000L;
+    private final AtomicLongArray _buckets = new AtomicLongArray( NB_BUCKETS );
+    private final AtomicLong _lCount = new AtomicLong(  );
+    private final AtomicLong _lTotalNanos = new AtomicLong(  );
+    private final AtomicLong _lMaxNanos = new AtomicLong(  );
+
+    /**
+     * Records a duration
+     * @param lNanos the duration in nanoseconds
+     */
+    void record( long lNanos )
+    {
+        long lMicros = Math.max( 0L, lNanos / NANOS_PER_MICRO );
+        int nBucket = Math.min( NB_BUCKETS - 1, 64 - Long.numberOfLeadingZeros( lMicros ) );
+        _buckets.incrementAndGet( nBucket );
+        _lCount.incrementAndGet(  );
+        _lTotalNanos.addAndGet( lNanos );
+
+        long lMax = _lMaxNanos.get(  );
+
+        while ( ( lNanos > lMax ) && !_lMaxNanos.compareAndSet( lMax, lNanos ) )
+        {
+            lMax = _lMaxNanos.get(  );
+        }
+    }
+
+    /**
+     * Gets the number of durations recorded
+     * @return the count
+     */
+    long getCount(  )
+    {
+        return _lCount.get(  );
+    }
+
+    /**
+     * Gets the sum of the durations
+     * @return the total, in milliseconds
+     */
+    double getTotalMillis(  )
+    {
+        return _lTotalNanos.get(  ) / 1e6;
+    }
+
+    /**
+     * Gets the mean duration
+     * @return the mean, in milliseconds
+     */
+    double getMeanMillis(  )
+    {
+        long lCount = _lCount.get(  );
+
+        return ( lCount == 0 ) ? 0 : ( _lTotalNanos.get(  ) / 1e6 / lCount );
+    }
+
+    /**
+     * Gets the longest duration
+     * @return the max, in milliseconds
+     */
+    double getMaxMillis(  )
+    {
+        return _lMaxNanos.get(  ) / 1e6;
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the durations
+     * @param dPercentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket of the percentile, in
+     *         milliseconds
+     */
+    double getPercentileMillis( double dPercentile )
+    {
+        long lCount = _lCount.get(  );
+
+        if ( lCount == 0 )
+        {
+            return 0;
+        }
+
+        long lRank = (long) Math.ceil( ( lCount * dPercentile ) / 100 );
+        long lSeen = 0;
+
+        for ( int i = 0; i < NB_BUCKETS; i++ )
+        {
+            lSeen += _buckets.get( i );
+
+            if ( lSeen >= lRank )
+            {
+                // upper bound of the bucket, bounded by the max
+                return Math.min( ( 1L << i ) / 1e3, getMaxMillis(  ) );
+            }
+        }
+
+        return getMaxMillis(  );
+    }
+
+    /**
+     * Clears the recorded durations
+     */
+    void reset(  )
+    {
+        for ( int i = 0; i < NB_BUCKETS; i++ )
+        {
+            _buckets.set( i, 0 );
+        }
+
+        _lCount.set( 0 );
+        _lTotalNanos.set( 0 );
+        _lMaxNanos.set( 0 );
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.page;
+
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageTreeHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageTreeSnapshot;
+import fr.paris.lutece.portal.business.page.Page;
+import fr.paris.lutece.portal.service.page.PageEvent;
+import fr.paris.lutece.portal.service.page.PageEventListener;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Keeps the page tree and the subtrees of the root pages in memory. The cache
+ * is built from a {@link PageTreeSnapshot} the first time it is needed, then
+ * updated on page creation, modification (move) and deletion events. It is
+ * rebuilt when an event cannot be applied (unknown page or parent), when it is
+ * older than the configured maximum age and at the start of each full
+ * indexing. Only the events of the local node are received : the cache must
+ * be disabled when the nodes of a cluster cannot share the page events.
+ */
+public final class PageTreeCacheService implements PageEventListener
+{
+    private static final String PROPERTY_CACHE_ENABLED = "document-multirootindexers.pageTree.cache.enabled";
+    private static final String PROPERTY_CACHE_MAX_AGE = "document-multirootindexers.pageTree.cache.maxAge";
+    private static final int DEFAULT_CACHE_MAX_AGE = 600;
+    private static final long MILLISECONDS = 1000L;
+    private static final PageTreeCacheService _singleton = new PageTreeCacheService(  );
+
+    /** Parent of each page, null when the cache has to be (re)built */
+    private Map<Integer, Integer> _mapParents;
+    private Map<Integer, List<Integer>> _mapChildren;
+
+    /** Time of the last build, in milliseconds */
+    private long _lBuildTime;
+
+    /** Immutable subtree of each root page already asked for */
+    private final Map<Integer, Set<Integer>> _mapSubtrees = new HashMap<Integer, Set<Integer>>(  );
+
+    /**
+     * Private constructor
+     */
+    private PageTreeCacheService(  )
+    {
+        // nothing
+    }
+
+    /**
+     * Returns the unique instance
+     * @return the instance
+     */
+    public static PageTreeCacheService getInstance(  )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Tells whether the cache is enabled or not
+     * @return true if enabled, otherwise false
+     */
+    public static boolean isEnabled(  )
+    {
+        return Boolean.parseBoolean( AppPropertiesService.getProperty( PROPERTY_CACHE_ENABLED, "true" ) );
+    }
+
+    /**
+     * Gets the ids of a page and all its descendants
+     * @param nIdRootPage the root page id
+     * @return an unmodifiable set of ids
+     */
+    public synchronized Set<Integer> getSubtreeIds( int nIdRootPage )
+    {
+        if ( ( _mapParents == null ) || isExpired(  ) )
+        {
+            build(  );
+        }
+
+        Set<Integer> setSubtree = _mapSubtrees.get( nIdRootPage );
+
+        if ( setSubtree == null )
+        {
+            setSubtree = new HashSet<Integer>(  );
+            setSubtree.add( nIdRootPage );
+            addDescendants( nIdRootPage, setSubtree );
+            setSubtree = Collections.unmodifiableSet( setSubtree );
+            _mapSubtrees.put( nIdRootPage, setSubtree );
+        }
+
+        return setSubtree;
+    }
+
+    /**
+     * Tells whether the cache is older than the configured maximum age, in
+     * seconds (0 or less : never)
+     * @return true if the cache has to be rebuilt, otherwise false
+     */
+    private boolean isExpired(  )
+    {
+        int nMaxAge = AppPropertiesService.getPropertyInt( PROPERTY_CACHE_MAX_AGE, DEFAULT_CACHE_MAX_AGE );
+
+        return ( nMaxAge > 0 ) && ( ( System.currentTimeMillis(  ) - _lBuildTime ) > ( nMaxAge * MILLISECONDS ) );
+    }
+
+    /**
+     * Drops the cache, it will be rebuilt on next access
+     */
+    public synchronized void invalidate(  )
+    {
+        _mapParents = null;
+        _mapChildren = null;
+        _mapSubtrees.clear(  );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public synchronized void processPageEvent( PageEvent event )
+    {
+        Page page = event.getPage(  );
+
+        if ( ( _mapParents == null ) || ( page == null ) )
+        {
+            return;
+        }
+
+        boolean bApplied;
+
+        switch ( event.getEventType(  ) )
+        {
+            case PageEvent.PAGE_CREATED:
+                bApplied = onPageCreated( page.getId(  ), page.getParentPageId(  ) );
+
+                break;
+
+            case PageEvent.PAGE_DELETED:
+                bApplied = onPageDeleted( page.getId(  ) );
+
+                break;
+
+            default:
+                // a modification may be a move
+                bApplied = onPageModified( page.getId(  ), page.getParentPageId(  ) );
+
+                break;
+        }
+
+        if ( !bApplied )
+        {
+            AppLogService.debug( "Page tree cache inconsistent after event on page " + page.getId(  ) +
+                ", the cache will be rebuilt" );
+            invalidate(  );
+        }
+    }
+
+    /**
+     * Builds the page tree from the database
+     */
+    private void build(  )
+    {
+        PageTreeSnapshot snapshot = PageTreeHome.getSnapshot(  );
+        _lBuildTime = System.currentTimeMillis(  );
+        _mapParents = new HashMap<Integer, Integer>( snapshot.size(  ) * 2 );
+        _mapChildren = new HashMap<Integer, List<Integer>>( snapshot.size(  ) * 2 );
+        _mapSubtrees.clear(  );
+
+        for ( int nIdPage : snapshot.getIds(  ) )
+        {
+            link( nIdPage, snapshot.getParentId( nIdPage ) );
+        }
+    }
+
+    /**
+     * Applies a page creation
+     * @param nIdPage the page id
+     * @param nIdParent the parent page id
+     * @return false if the cache is inconsistent
+     */
+    private boolean onPageCreated( int nIdPage, int nIdParent )
+    {
+        if ( _mapParents.containsKey( nIdPage ) || !_mapParents.containsKey( nIdParent ) )
+        {
+            return false;
+        }
+
+        link( nIdPage, nIdParent );
+
+        Set<Integer> setAdded = Collections.singleton( nIdPage );
+
+        for ( Map.Entry<Integer, Set<Integer>> entry : _mapSubtrees.entrySet(  ) )
+        {
+            if ( entry.getValue(  ).contains( nIdParent ) )
+            {
+                entry.setValue( copyAndAdd( entry.getValue(  ), setAdded ) );
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies a page deletion
+     * @param nIdPage the page id
+     * @return false if the cache is inconsistent
+     */
+    private boolean onPageDeleted( int nIdPage )
+    {
+        if ( !_mapParents.containsKey( nIdPage ) )
+        {
+            return false;
+        }
+
+        Set<Integer> setRemoved = new HashSet<Integer>(  );
+        setRemoved.add( nIdPage );
+        addDescendants( nIdPage, setRemoved );
+
+        unlink( nIdPage );
+
+        for ( Integer nIdRemoved : setRemoved )
+        {
+            _mapParents.remove( nIdRemoved );
+            _mapChildren.remove( nIdRemoved );
+            _mapSubtrees.remove( nIdRemoved );
+        }
+
+        for ( Map.Entry<Integer, Set<Integer>> entry : _mapSubtrees.entrySet(  ) )
+        {
+            if ( entry.getValue(  ).contains( nIdPage ) )
+            {
+                entry.setValue( copyAndRemove( entry.getValue(  ), setRemoved ) );
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies a page modification, which may have changed its parent
+     * @param nIdPage the page id
+     * @param nIdParent the parent page id
+     * @return false if the cache is inconsistent
+     */
+    private boolean onPageModified( int nIdPage, int nIdParent )
+    {
+        Integer nIdOldParent = _mapParents.get( nIdPage );
+
+        if ( nIdOldParent == null )
+        {
+            return false;
+        }
+
+        if ( nIdOldParent == nIdParent )
+        {
+            return true;
+        }
+
+        Set<Integer> setMoved = new HashSet<Integer>(  );
+        setMoved.add( nIdPage );
+        addDescendants( nIdPage, setMoved );
+
+        if ( !_mapParents.containsKey( nIdParent ) || setMoved.contains( nIdParent ) )
+        {
+            return false;
+        }
+
+        unlink( nIdPage );
+        link( nIdPage, nIdParent );
+
+        for ( Map.Entry<Integer, Set<Integer>> entry : _mapSubtrees.entrySet(  ) )
+        {
+            if ( entry.getKey(  ) == nIdPage )
+            {
+                continue;
+            }
+
+            boolean bWasInSubtree = entry.getValue(  ).contains( nIdPage );
+            boolean bIsInSubtree = entry.getValue(  ).contains( nIdParent );
+
+            if ( bWasInSubtree && !bIsInSubtree )
+            {
+                entry.setValue( copyAndRemove( entry.getValue(  ), setMoved ) );
+            }
+            else if ( !bWasInSubtree && bIsInSubtree )
+            {
+                entry.setValue( copyAndAdd( entry.getValue(  ), setMoved ) );
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Records the parent of a page
+     * @param nIdPage the page id
+     * @param nIdParent the parent page id
+     */
+    private void link( int nIdPage, int nIdParent )
+    {
+        _mapParents.put( nIdPage, nIdParent );
+
+        List<Integer> listChildren = _mapChildren.get( nIdParent );
+
+        if ( listChildren == null )
+        {
+            listChildren = new ArrayList<Integer>(  );
+            _mapChildren.put( nIdParent, listChildren );
+        }
+
+        listChildren.add( nIdPage );
+    }
+
+    /**
+     * Removes a page from the children of its parent
+     * @param nIdPage the page id
+     */
+    private void unlink( int nIdPage )
+    {
+        List<Integer> listChildren = _mapChildren.get( _mapParents.get( nIdPage ) );
+
+        if ( listChildren != null )
+        {
+            listChildren.remove( Integer.valueOf( nIdPage ) );
+        }
+    }
+
+    /**
+     * Adds the descendants of a page to a set
+     * @param nIdPage the page id
+     * @param setIds the set
+     */
+    private void addDescendants( int nIdPage, Set<Integer> setIds )
+    {
+        List<Integer> listToVisit = new ArrayList<Integer>(  );
+        listToVisit.add( nIdPage );
+
+        for ( int i = 0; i < listToVisit.size(  ); i++ )
+        {
+            List<Integer> listChildren = _mapChildren.get( listToVisit.get( i ) );
+
+            if ( listChildren != null )
+            {
+                for ( Integer nIdChild : listChildren )
+                {
+                    // the set protects against cycles
+                    if ( setIds.add( nIdChild ) )
+                    {
+                        listToVisit.add( nIdChild );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies an immutable subtree and adds ids to the copy
+     * @param setSubtree the subtree
+     * @param setAdded the ids to add
+     * @return the new immutable subtree
+     */
+    private static Set<Integer> copyAndAdd( Set<Integer> setSubtree, Set<Integer> setAdded )
+    {
+        Set<Integer> setCopy = new HashSet<Integer>( setSubtree );
+        setCopy.addAll( setAdded );
+
+        return Collections.unmodifiableSet( setCopy );
+    }
+
+    /**
+     * Copies an immutable subtree and removes ids from the copy
+     * @param setSubtree the subtree
+     * @param setRemoved the ids to remove
+     * @return the new immutable subtree
+     */
+    private static Set<Integer> copyAndRemove( Set<Integer> setSubtree, Set<Integer> setRemoved )
+    {
+        Set<Integer> setCopy = new HashSet<Integer>( setSubtree );
+        setCopy.removeAll( setRemoved );
+
+        return Collections.unmodifiableSet( setCopy );
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.util;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Creates named daemon threads for the indexing workers.
+ */
+public class IndexingThreadFactory implements ThreadFactory
+{
+    private final String _strPrefix;
+    private final AtomicInteger _nCount = new AtomicInteger(  );
+
+    /**
+     * Constructor
+     * @param strName the name of the workers, used as thread name prefix
+     */
+    public IndexingThreadFactory( String strName )
+    {
+        _strPrefix = "multirootindexers-" + strName + "-";
+    }
+
+    /**
+     * Creates a factory of virtual threads when the runtime supports them (the
+     * module is built for older runtimes, so they are looked up by
+     * reflection), otherwise a factory of named daemon threads. Meant for
+     * workers mostly waiting on I/O.
+     * @param strName the name of the workers, used as thread name prefix
+     * @return the thread factory
+     */
+    public static ThreadFactory newBlockingTaskFactory( String strName )
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            Class<?> classBuilder = Class.forName( "java.lang.Thread$Builder" );
+            Method methodName = classBuilder.getMethod( "name", String.class, long.class );
+            builder = methodName.invoke( builder, "multirootindexers-" + strName + "-", 1L );
+
+            return (ThreadFactory) classBuilder.getMethod( "factory" ).invoke( builder );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            // No virtual threads on this runtime
+        }
+        catch ( Exception e )
+        {
+            AppLogService.error( "Unable to create the virtual threads factory : " + e.getMessage(  ), e );
+        }
+
+        return new IndexingThreadFactory( strName );
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Thread newThread( Runnable runnable )
+    {
+        Thread thread = new Thread( runnable, _strPrefix + _nCount.incrementAndGet(  ) );
+        thread.setDaemon( true );
+
+        return thread;
+    }
+}
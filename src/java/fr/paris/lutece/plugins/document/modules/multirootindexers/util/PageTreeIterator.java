@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.util;
+
+import fr.paris.lutece.portal.business.page.Page;
+import fr.paris.lutece.portal.business.page.PageHome;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Iterates over the pages of a subtree. Only the page ids are kept in memory,
+ * each page is loaded (without its image content) when it is reached, the
+ * pages deleted meanwhile are skipped.
+ */
+final class PageTreeIterator implements Iterator<Page>
+{
+    private final int[] _nIdsPages;
+    private int _nNext;
+    private Page _nextPage;
+
+    /**
+     * Constructor
+     * @param nIdsPages the ids of the pages, in iteration order
+     */
+    PageTreeIterator( int[] nIdsPages )
+    {
+        _nIdsPages = nIdsPages;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public boolean hasNext(  )
+    {
+        while ( ( _nextPage == null ) && ( _nNext < _nIdsPages.length ) )
+        {
+            _nextPage = PageHome.getPage( _nIdsPages[_nNext++] );
+        }
+
+        return _nextPage != null;
+    }
+
+    /**
+     *
+     *{@inheritDoc}
+     */
+    public Page next(  )
+    {
+        if ( !hasNext(  ) )
+        {
+            throw new NoSuchElementException(  );
+        }
+
+        Page page = _nextPage;
+        _nextPage = null;
+
+        return page;
+    }
+
+    /**
+     * Not supported
+     */
+    public void remove(  )
+    {
+        throw new UnsupportedOperationException(  );
+    }
+}
@@ -33,6 +33,9 @@
  */
 package fr.paris.lutece.plugins.document.modules.multirootindexers.util;
 
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageTreeHome;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.business.page.PageTreeSnapshot;
+import fr.paris.lutece.plugins.document.modules.multirootindexers.service.page.PageTreeCacheService;
 import fr.paris.lutece.portal.business.page.Page;
 import fr.paris.lutece.portal.business.page.PageHome;
 import fr.paris.lutece.portal.service.portal.PortalService;
@@ -40,9 +43,12 @@ import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
 
 /**
@@ -63,76 +69,192 @@ public final class PageTreeUtils
     }
 
     /**
-     * Gets all pages from root page (instead of all db page)
+     * Gets all pages from root page (instead of all db page). All the pages
+     * are loaded at once, see {@link #iteratePagesFromRoot(int)} to walk
+     * large trees.
      * @return all pages from root id
      */
     public static List<Page> getListPagesFromRoot(  )
     {
-        int nRootId = PortalService.getRootPageId(  );
+        return getListPagesFromRoot( PortalService.getRootPageId(  ) );
+    }
+
+    /**
+     * Iterates over the pages from root page
+     * @return an iterator over the pages from root id
+     * @see #iteratePagesFromRoot(int)
+     */
+    public static Iterator<Page> iteratePagesFromRoot(  )
+    {
+        return iteratePagesFromRoot( PortalService.getRootPageId(  ) );
+    }
+
+    /**
+     * Iterates over the pages from the given root page, in the same order as
+     * {@link #getListPagesFromRoot(int)}. Only the page ids of the subtree
+     * are read upfront, each page is loaded when it is reached, so the memory
+     * used does not grow with the size of the tree.
+     * @param nRootId the root page id
+     * @return an iterator over the pages from root id
+     */
+    public static Iterator<Page> iteratePagesFromRoot( int nRootId )
+    {
+        int[] nIdsChildPages = PageTreeHome.getSnapshot(  ).getDescendantIds( nRootId );
+        int[] nIdsPages = new int[nIdsChildPages.length + 1];
+        nIdsPages[0] = nRootId;
+        System.arraycopy( nIdsChildPages, 0, nIdsPages, 1, nIdsChildPages.length );
+
+        return new PageTreeIterator( nIdsPages );
+    }
+
+    /**
+     * Gets all pages from the given root page. All the pages are loaded at
+     * once, see {@link #iteratePagesFromRoot(int)} to walk large trees.
+     * @param nRootId the root page id
+     * @return all pages from root id
+     */
+    public static List<Page> getListPagesFromRoot( int nRootId )
+    {
+        PageTreeSnapshot snapshot = PageTreeHome.getSnapshot(  );
         List<Page> listPages = new ArrayList<Page>(  );
 
         Page rootPage = PageHome.findByPrimaryKey( nRootId );
 
         listPages.add( rootPage );
-        listPages.addAll( getChildPages( nRootId ) );
+        listPages.addAll( getChildPages( snapshot, nRootId ) );
 
         return listPages;
     }
 
     /**
-     * Gets all pages id from root page
+     * Gets all pages id from root page. Served by the {@link PageTreeCacheService}
+     * when enabled, the returned set may then be unmodifiable.
      * @return all pages id from root id.
      */
     public static Set<Integer> getListPagesIdsFromRoot(  )
     {
-        int nRootId = PortalService.getRootPageId(  );
-        Set<Integer> setPagesIds = new TreeSet<Integer>(  );
+        return getListPagesIdsFromRoot( PortalService.getRootPageId(  ) );
+    }
+
+    /**
+     * Gets all pages id from the given root page. Served by the
+     * {@link PageTreeCacheService} when enabled, the returned set may then be
+     * unmodifiable.
+     * @param nRootId the root page id
+     * @return all pages id from root id.
+     */
+    public static Set<Integer> getListPagesIdsFromRoot( int nRootId )
+    {
+        if ( PageTreeCacheService.isEnabled(  ) )
+        {
+            return PageTreeCacheService.getInstance(  ).getSubtreeIds( nRootId );
+        }
+
+        return getListPagesIdsFromRoot( PageTreeHome.getSnapshot(  ), nRootId );
+    }
+
+    /**
+     * Gets all pages id from the given root page of a page tree
+     * @param snapshot the page tree
+     * @param nRootId the root page id
+     * @return all pages id from root id.
+     */
+    static Set<Integer> getListPagesIdsFromRoot( PageTreeSnapshot snapshot, int nRootId )
+    {
+        Set<Integer> setPagesIds = getListChildPagesids( snapshot, nRootId );
 
         setPagesIds.add( nRootId );
-        setPagesIds.addAll( getListChildPagesids( nRootId ) );
 
         return setPagesIds;
     }
 
     /**
-     * Gets children pages page (recursively)
+     * Gets children pages page (recursively), the children of a page first,
+     * then the descendants of each child. The children are loaded with one
+     * query per page having children according to the snapshot, the leaves
+     * are not queried. The tree is walked with an explicit stack, so its
+     * depth is not bounded by the thread stack.
+     * @param snapshot the page tree
      * @param nIdPage root page
      * @return all childrenpages
      */
-    private static Collection<Page> getChildPages( int nIdPage )
+    private static Collection<Page> getChildPages( PageTreeSnapshot snapshot, int nIdPage )
     {
-        Collection<Page> collectionPages = PageHome.getChildPages( nIdPage );
-        List<Page> listChildsPage = new ArrayList<Page>(  );
+        List<Page> listChildPages = new ArrayList<Page>(  );
+        Set<Integer> setVisited = new HashSet<Integer>(  );
+        Deque<int[]> stackRanges = new ArrayDeque<int[]>(  );
+        setVisited.add( nIdPage );
+        addChildPages( snapshot, nIdPage, listChildPages, setVisited, stackRanges );
 
-        for ( Page page : collectionPages )
+        while ( !stackRanges.isEmpty(  ) )
         {
-            listChildsPage.addAll( getChildPages( page.getId(  ) ) );
+            // next page of the innermost range of children still to expand
+            int[] nRange = stackRanges.peek(  );
+
+            if ( nRange[0] == nRange[1] )
+            {
+                stackRanges.pop(  );
+            }
+            else
+            {
+                Page page = listChildPages.get( nRange[0]++ );
+                addChildPages( snapshot, page.getId(  ), listChildPages, setVisited, stackRanges );
+            }
         }
 
-        collectionPages.addAll( listChildsPage );
+        return listChildPages;
+    }
 
-        return collectionPages;
+    /**
+     * Adds the children of a page to the list and pushes their range to
+     * expand, if the page has children
+     * @param snapshot the page tree
+     * @param nIdPage the page
+     * @param listChildPages the pages found so far
+     * @param setVisited the ids of the pages found so far, protects against
+     *            cycles
+     * @param stackRanges the ranges of pages of the list still to expand
+     */
+    private static void addChildPages( PageTreeSnapshot snapshot, int nIdPage, List<Page> listChildPages,
+        Set<Integer> setVisited, Deque<int[]> stackRanges )
+    {
+        if ( snapshot.getChildCount( nIdPage ) == 0 )
+        {
+            return;
+        }
+
+        int nStart = listChildPages.size(  );
+
+        for ( Page page : PageHome.getChildPages( nIdPage ) )
+        {
+            if ( setVisited.add( page.getId(  ) ) )
+            {
+                listChildPages.add( page );
+            }
+        }
+
+        if ( listChildPages.size(  ) > nStart )
+        {
+            stackRanges.push( new int[] { nStart, listChildPages.size(  ) } );
+        }
     }
 
     /**
      * Gets children pages id page (recursively)
+     * @param snapshot the page tree
      * @param nIdPage root page
      * @return all childrenpages
      */
-    private static Set<Integer> getListChildPagesids( int nIdPage )
+    private static Set<Integer> getListChildPagesids( PageTreeSnapshot snapshot, int nIdPage )
     {
-        Set<Integer> setPagesIds = new TreeSet<Integer>(  );
-        Collection<Page> collectionPages = PageHome.getChildPagesMinimalData( nIdPage );
-        Set<Integer> setChildPagesIds = new TreeSet<Integer>(  );
+        int[] nIdsChildPages = snapshot.getDescendantIds( nIdPage );
+        Set<Integer> setPagesIds = new HashSet<Integer>( ( nIdsChildPages.length * 4 / 3 ) + 2 );
 
-        for ( Page page : collectionPages )
+        for ( int nIdChildPage : nIdsChildPages )
         {
-            setChildPagesIds.addAll( getListChildPagesids( page.getId(  ) ) );
-            setPagesIds.add( page.getId(  ) );
+            setPagesIds.add( nIdChildPage );
         }
 
-        setPagesIds.addAll( setChildPagesIds );
-
         return setPagesIds;
     }
 }
@@ -1,5 +1,7 @@
 --
 -- Table structure for table core_indexer_action_en
+-- (the core_indexer_action_<lang> table of any other language listed in
+-- document-multirootindexers.indexerAction.languages has the same structure and indexes)
 --
 DROP TABLE IF EXISTS core_indexer_action_en;
 CREATE TABLE  core_indexer_action_en (
@@ -9,4 +11,41 @@ CREATE TABLE  core_indexer_action_en (
   indexer_name varchar(255) NOT NULL,
   id_portlet int default 0 NOT NULL,
   PRIMARY KEY (id_action)
+);
+CREATE INDEX idx_indexer_action_en_task ON core_indexer_action_en (id_task, id_action);
+CREATE INDEX idx_indexer_action_en_document ON core_indexer_action_en (id_document);
+
+--
+-- Table structure for table document_multirootindexers_id_block
+-- (next free id of the indexer action tables, filled on first use)
+--
+DROP TABLE IF EXISTS document_multirootindexers_id_block;
+CREATE TABLE document_multirootindexers_id_block (
+  table_name varchar(64) NOT NULL,
+  next_id int default 0 NOT NULL,
+  PRIMARY KEY (table_name)
+);
+
+--
+-- Table structure for table document_multirootindexers_manifest
+--
+DROP TABLE IF EXISTS document_multirootindexers_manifest;
+CREATE TABLE document_multirootindexers_manifest (
+  document_portlet_id varchar(255) NOT NULL,
+  id_document int default 0 NOT NULL,
+  id_portlet int default 0 NOT NULL,
+  date_modification timestamp NULL,
+  content_hash varchar(64) NULL,
+  role varchar(50) NULL,
+  PRIMARY KEY (document_portlet_id)
+);
+
+--
+-- Table structure for table document_multirootindexers_page_fingerprint
+--
+DROP TABLE IF EXISTS document_multirootindexers_page_fingerprint;
+CREATE TABLE document_multirootindexers_page_fingerprint (
+  id_page int default 0 NOT NULL,
+  fingerprint varchar(64) NOT NULL,
+  PRIMARY KEY (id_page)
 );
\ No newline at end of file
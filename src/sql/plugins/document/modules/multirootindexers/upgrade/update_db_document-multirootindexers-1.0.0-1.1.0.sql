@@ -0,0 +1,35 @@
+--
+-- Upgrade from 1.0.0 : tables of the indexer action id blocks, of the index manifest and of the page fingerprints
+-- (the manifest and the page fingerprints stay disabled until enabled in document-multirootindexers.properties)
+--
+CREATE TABLE IF NOT EXISTS document_multirootindexers_id_block (
+  table_name varchar(64) NOT NULL,
+  next_id int default 0 NOT NULL,
+  PRIMARY KEY (table_name)
+);
+
+CREATE TABLE IF NOT EXISTS document_multirootindexers_manifest (
+  document_portlet_id varchar(255) NOT NULL,
+  id_document int default 0 NOT NULL,
+  id_portlet int default 0 NOT NULL,
+  date_modification timestamp NULL,
+  content_hash varchar(64) NULL,
+  role varchar(50) NULL,
+  PRIMARY KEY (document_portlet_id)
+);
+
+CREATE TABLE IF NOT EXISTS document_multirootindexers_page_fingerprint (
+  id_page int default 0 NOT NULL,
+  fingerprint varchar(64) NOT NULL,
+  PRIMARY KEY (id_page)
+);
+
+--
+-- Indexes of the indexer action table read by the incremental indexing (by task, in id order) and by the
+-- coalescing of the actions (by document). The core_indexer_action_<lang> table of any other language listed in
+-- document-multirootindexers.indexerAction.languages needs the same indexes, e.g. for fr :
+-- CREATE INDEX idx_indexer_action_fr_task ON core_indexer_action_fr (id_task, id_action);
+-- CREATE INDEX idx_indexer_action_fr_document ON core_indexer_action_fr (id_document);
+--
+CREATE INDEX idx_indexer_action_en_task ON core_indexer_action_en (id_task, id_action);
+CREATE INDEX idx_indexer_action_en_document ON core_indexer_action_en (id_document);
\ No newline at end of file
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.business.indexeraction;
+
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.service.search.IndexationService;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Checks the merge rules of {@link IndexerActionCoalescer}
+ */
+public class IndexerActionCoalescerTest
+{
+    private static final String INDEXER = "DocumentIndexer";
+    private static final int[] TASKS =
+        {
+            IndexerAction.TASK_CREATE, IndexerAction.TASK_MODIFY, IndexerAction.TASK_DELETE
+        };
+    private int _nNextIdAction = 1;
+
+    /**
+     * Checks the task covering each pair of tasks
+     */
+    @Test
+    public void testMergeAllPairs(  )
+    {
+        for ( int nOlderTask : TASKS )
+        {
+            for ( int nNewerTask : TASKS )
+            {
+                assertEquals( nOlderTask + " then " + nNewerTask, getExpectedTask( nOlderTask, nNewerTask ),
+                    IndexerActionCoalescer.merge( nOlderTask, nNewerTask ) );
+            }
+        }
+    }
+
+    /**
+     * Checks that a newer action on the same document and portlet supersedes
+     * the older one and takes the merged task, for each pair of tasks
+     */
+    @Test
+    public void testAddAllPairs(  )
+    {
+        for ( int nOlderTask : TASKS )
+        {
+            for ( int nNewerTask : TASKS )
+            {
+                IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+                IndexerAction older = newAction( "1", 10, nOlderTask );
+                IndexerAction newer = newAction( "1", 10, nNewerTask );
+                int nExpectedTask = getExpectedTask( nOlderTask, nNewerTask );
+                String strPair = nOlderTask + " then " + nNewerTask;
+
+                coalescer.add( older );
+                coalescer.add( newer );
+
+                assertEquals( strPair, 1, coalescer.getActions(  ).size(  ) );
+                assertSame( strPair, newer, coalescer.getActions(  ).iterator(  ).next(  ) );
+                assertEquals( strPair, nExpectedTask, newer.getIdTask(  ) );
+                assertEquals( strPair, 1, coalescer.getSuperseded(  ).size(  ) );
+                assertSame( strPair, older, coalescer.getSuperseded(  ).get( 0 ) );
+                assertEquals( strPair, nExpectedTask != nNewerTask, coalescer.isTaskChanged( newer ) );
+            }
+        }
+    }
+
+    /**
+     * Checks that a delete followed by a create then a delete stays a delete,
+     * and that creates only stay a create
+     */
+    @Test
+    public void testSequences(  )
+    {
+        assertEquals( IndexerAction.TASK_DELETE,
+            coalesce( IndexerAction.TASK_DELETE, IndexerAction.TASK_CREATE, IndexerAction.TASK_DELETE ) );
+        assertEquals( IndexerAction.TASK_MODIFY,
+            coalesce( IndexerAction.TASK_DELETE, IndexerAction.TASK_CREATE, IndexerAction.TASK_CREATE ) );
+        assertEquals( IndexerAction.TASK_CREATE,
+            coalesce( IndexerAction.TASK_CREATE, IndexerAction.TASK_CREATE, IndexerAction.TASK_CREATE ) );
+        assertEquals( IndexerAction.TASK_MODIFY,
+            coalesce( IndexerAction.TASK_CREATE, IndexerAction.TASK_MODIFY, IndexerAction.TASK_CREATE ) );
+    }
+
+    /**
+     * Checks that a newer action on all the portlets of a document supersedes
+     * the older actions on single portlets of this document only
+     */
+    @Test
+    public void testAllDocumentSupersedesPortlets(  )
+    {
+        IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+        IndexerAction portlet1 = newAction( "1", 10, IndexerAction.TASK_CREATE );
+        IndexerAction portlet2 = newAction( "1", 20, IndexerAction.TASK_CREATE );
+        IndexerAction otherDocument = newAction( "2", 10, IndexerAction.TASK_CREATE );
+        IndexerAction allPortlets = newAction( "1", IndexationService.ALL_DOCUMENT, IndexerAction.TASK_CREATE );
+
+        coalescer.add( portlet1 );
+        coalescer.add( portlet2 );
+        coalescer.add( otherDocument );
+        coalescer.add( allPortlets );
+
+        List<IndexerAction> listActions = new ArrayList<IndexerAction>( coalescer.getActions(  ) );
+        assertEquals( 2, listActions.size(  ) );
+        assertTrue( listActions.contains( otherDocument ) );
+        assertTrue( listActions.contains( allPortlets ) );
+        assertEquals( IndexerAction.TASK_CREATE, allPortlets.getIdTask(  ) );
+        assertEquals( 2, coalescer.getSuperseded(  ).size(  ) );
+        assertTrue( coalescer.getSuperseded(  ).contains( portlet1 ) );
+        assertTrue( coalescer.getSuperseded(  ).contains( portlet2 ) );
+    }
+
+    /**
+     * Checks the merged task of an action on all the portlets superseding
+     * single-portlet actions, for each pair of tasks
+     */
+    @Test
+    public void testAllDocumentMergesTasks(  )
+    {
+        for ( int nOlderTask : TASKS )
+        {
+            for ( int nNewerTask : TASKS )
+            {
+                IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+                IndexerAction older = newAction( "1", 10, nOlderTask );
+                IndexerAction newer = newAction( "1", IndexationService.ALL_DOCUMENT, nNewerTask );
+
+                coalescer.add( older );
+                coalescer.add( newer );
+
+                assertEquals( nOlderTask + " then " + nNewerTask, getExpectedTask( nOlderTask, nNewerTask ),
+                    newer.getIdTask(  ) );
+                assertEquals( 1, coalescer.getActions(  ).size(  ) );
+            }
+        }
+    }
+
+    /**
+     * Checks that an older action on all the portlets is not superseded by a
+     * newer action on a single portlet, nor actions of other indexers
+     */
+    @Test
+    public void testNotSuperseded(  )
+    {
+        IndexerAction allPortlets = newAction( "1", IndexationService.ALL_DOCUMENT, IndexerAction.TASK_DELETE );
+        IndexerAction portlet = newAction( "1", 10, IndexerAction.TASK_CREATE );
+        IndexerAction otherIndexer = newAction( "1", 10, IndexerAction.TASK_CREATE );
+        otherIndexer.setIndexerName( "PageIndexer" );
+
+        assertFalse( IndexerActionCoalescer.supersedes( portlet, allPortlets ) );
+        assertTrue( IndexerActionCoalescer.supersedes( allPortlets, portlet ) );
+        assertFalse( IndexerActionCoalescer.supersedes( otherIndexer, portlet ) );
+
+        IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+        coalescer.add( allPortlets );
+        coalescer.add( portlet );
+        coalescer.add( otherIndexer );
+
+        assertEquals( 3, coalescer.getActions(  ).size(  ) );
+        assertTrue( coalescer.getSuperseded(  ).isEmpty(  ) );
+        assertEquals( IndexerAction.TASK_DELETE, allPortlets.getIdTask(  ) );
+        assertEquals( IndexerAction.TASK_CREATE, portlet.getIdTask(  ) );
+    }
+
+    /**
+     * Gets the expected task of an older task followed by a newer one
+     * @param nOlderTask the older task
+     * @param nNewerTask the newer task
+     * @return the task
+     */
+    private static int getExpectedTask( int nOlderTask, int nNewerTask )
+    {
+        if ( nNewerTask == IndexerAction.TASK_DELETE )
+        {
+            return IndexerAction.TASK_DELETE;
+        }
+
+        if ( ( nOlderTask == IndexerAction.TASK_CREATE ) && ( nNewerTask == IndexerAction.TASK_CREATE ) )
+        {
+            return IndexerAction.TASK_CREATE;
+        }
+
+        return IndexerAction.TASK_MODIFY;
+    }
+
+    /**
+     * Coalesces actions with the same document and portlet
+     * @param nTasks the tasks, from the oldest to the newest
+     * @return the task of the remaining action
+     */
+    private int coalesce( int... nTasks )
+    {
+        IndexerActionCoalescer coalescer = new IndexerActionCoalescer(  );
+
+        for ( int nTask : nTasks )
+        {
+            coalescer.add( newAction( "1", 10, nTask ) );
+        }
+
+        assertEquals( 1, coalescer.getActions(  ).size(  ) );
+        assertEquals( nTasks.length - 1, coalescer.getSuperseded(  ).size(  ) );
+
+        return coalescer.getActions(  ).iterator(  ).next(  ).getIdTask(  );
+    }
+
+    /**
+     * Creates an action of the document indexer
+     * @param strIdDocument the document id
+     * @param nIdPortlet the portlet id
+     * @param nTask the task
+     * @return the action
+     */
+    private IndexerAction newAction( String strIdDocument, int nIdPortlet, int nTask )
+    {
+        IndexerAction action = new IndexerAction(  );
+        action.setIdAction( _nNextIdAction++ );
+        action.setIdDocument( strIdDocument );
+        action.setIdPortlet( nIdPortlet );
+        action.setIdTask( nTask );
+        action.setIndexerName( INDEXER );
+
+        return action;
+    }
+}
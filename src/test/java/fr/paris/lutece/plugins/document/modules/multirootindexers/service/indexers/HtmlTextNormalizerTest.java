@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002-2014, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.document.modules.multirootindexers.service.indexers;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.sax.BodyContentHandler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+
+
+/**
+ * Checks the {@link HtmlTextNormalizer} against the Tika HtmlParser, as used
+ * by the indexer, on a corpus of document contents. The texts are compared
+ * with the whitespaces collapsed, as the indexer does when the normalizer is
+ * verified. The samples the normalizer reports as malformed go through Tika
+ * in the indexer, they are listed apart.
+ */
+public class HtmlTextNormalizerTest
+{
+    private static final String CONTENT_TYPE_HTML_UTF8 = "text/html; charset=UTF-8";
+    private static final String CHARSET_UTF8 = "UTF-8";
+
+    /** Samples the normalizer must give the same words as Tika for */
+    private static final String[][] CORPUS =
+        {
+            { "plain text", "Title Some plain text, with punctuation : a < b and c > d." },
+            { "paragraphs", "<p>First paragraph</p><p>Second <b>bold</b> and <i>italic</i></p>Tail" },
+            { "implicit paragraph end", "<p>one<p>two<div>three</div>four" },
+            { "lists", "<ul><li>one<li>two</li><li>three</ul><ol><li>a</li></ol><dl><dt>t<dd>d</dl>" },
+            { "table", "<table><tr><th>Head</th><td>cell 1<td>cell 2</tr><tr><td>next</td></tr></table>" },
+            { "line breaks", "line 1<br>line 2<br/>line 3<hr>end" },
+            { "attributes", "<a href=\"page.jsp?a=1&amp;b=2\" title='x > y'>link</a> <img src=\"i.png\" alt=\"alt\">" },
+            { "named entities", "caf&eacute; &amp; cr&egrave;me &lt;tag&gt; &quot;quoted&quot; &copy; &nbsp;end" },
+            { "numeric entities", "&#233;t&#233; &#xE9;t&#xe9; &#8364; &#x1F600; &#65;BC" },
+            { "apostrophe entity", "l&apos;&eacute;t&eacute; d&#39;hiver" },
+            { "unknown and bare ampersands", "fish & chips &unknown; a&b AT&T &; R&amp;D" },
+            { "script", "before<script type=\"text/javascript\">var s = \"<p>no</p>\"; if (a < b) {}</script>after" },
+            { "style", "<style>p { color: red; } /* </p> */</style>visible <STYLE>b{}</STYLE>text" },
+            { "comments", "a<!-- comment with <p>tags</p> -->b<!---->c<!-- - -- -->d" },
+            { "declarations", "<?xml version=\"1.0\"?><!DOCTYPE html>text" },
+            { "misnested tags", "<b>bold <i>both</b> italic</i> <p>para <div>block</p> end</div>" },
+            { "unclosed elements", "<div><p>open paragraph<li>item<td>cell" },
+            { "upper case tags", "<P>Para</P><DIV>Block</DIV><Br>x" },
+            { "non ascii text", "Été à Paris : œuvre, naïveté, straße, Ελληνικά, 日本語のテキスト, العربية" },
+            { "xml metadata", "Title <metadata><author>Jean Dupont</author><keywords>a, b</keywords></metadata>" },
+            { "title element", "<title>Not indexed</title>Indexed" },
+        };
+
+    /** Samples the normalizer reports as malformed, the indexer uses Tika for them */
+    private static final String[][] MALFORMED =
+        {
+            { "cdata", "a<![CDATA[ <p>raw</p> ]]>b" },
+            { "unterminated tag", "text <p class=\"x\"" },
+            { "unterminated comment", "text <!-- not closed" },
+            { "tag inside tag", "<p <b>text</b>" },
+            { "unterminated script", "a<script>var x = 1;" },
+        };
+
+    /**
+     * Compares the normalizer and Tika on the corpus
+     * @throws Exception if Tika fails
+     */
+    @Test
+    public void testSameTextAsTika(  ) throws Exception
+    {
+        for ( String[] sample : CORPUS )
+        {
+            String strNormalized = HtmlTextNormalizer.normalize( sample[1] );
+            assertEquals( sample[0], normalizeWhitespaces( parseWithTika( sample[1] ) ),
+                normalizeWhitespaces( strNormalized ) );
+        }
+    }
+
+    /**
+     * Checks that the malformed samples are reported as such
+     */
+    @Test
+    public void testMalformed(  )
+    {
+        for ( String[] sample : MALFORMED )
+        {
+            assertNull( sample[0], HtmlTextNormalizer.normalize( sample[1] ) );
+        }
+    }
+
+    /**
+     * Parses a content as the indexer does with Tika
+     * @param strContent the content
+     * @return the text
+     * @throws Exception if Tika fails
+     */
+    private static String parseWithTika( String strContent )
+        throws Exception
+    {
+        BodyContentHandler handler = new BodyContentHandler(  );
+        Metadata metadata = new Metadata(  );
+        metadata.set( Metadata.CONTENT_TYPE, CONTENT_TYPE_HTML_UTF8 );
+        new HtmlParser(  ).parse( new ByteArrayInputStream( strContent.getBytes( CHARSET_UTF8 ) ), handler, metadata,
+            new ParseContext(  ) );
+
+        return handler.toString(  );
+    }
+
+    /**
+     * Collapses the whitespaces, as the indexer does to compare the outputs
+     * @param strText the text
+     * @return the text with single spaces
+     */
+    private static String normalizeWhitespaces( String strText )
+    {
+        return StringUtils.join( StringUtils.split( strText ), ' ' );
+    }
+}